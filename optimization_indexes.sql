@@ -35,6 +35,34 @@ COMMENT ON INDEX idx_vente_sync IS 'Index composite pour synchronisation';
 CREATE INDEX IF NOT EXISTS idx_vente_produit ON vente(produit);
 COMMENT ON INDEX idx_vente_produit IS 'Index pour recherche par produit';
 
+-- 7. Index pour la liste paginée (pagination par curseur sur date_vente, id)
+--    Sert le ORDER BY date_vente DESC NULLS LAST, id DESC LIMIT n des ventes actives,
+--    ventes sans date comprises (date_vente IS NULL ORDER BY id DESC en fin d'index)
+DROP INDEX IF EXISTS idx_vente_listing;
+CREATE INDEX IF NOT EXISTS idx_vente_listing ON vente(date_vente DESC NULLS LAST, id DESC) WHERE deleted = false;
+COMMENT ON INDEX idx_vente_listing IS 'Index partiel pour la liste paginée des ventes actives';
+
+-- 8. Index couvrant pour l'agrégation répartie (/api/analytics/query)
+--    Filtre par période et par part de l'espace des UUID, sans lire la table (index-only scan)
+CREATE INDEX IF NOT EXISTS idx_vente_aggregate ON vente(date_vente, id) INCLUDE (produit, montant) WHERE deleted = false;
+COMMENT ON INDEX idx_vente_aggregate IS 'Index couvrant pour les GROUP BY par produit ou par jour';
+
+-- 9. Index partiel pour le compactage des tombstones
+--    Sert le parcours par lots de la purge : WHERE deleted = true AND deleted_at < ?
+--    AND (deleted_at, id) > (?, ?) ORDER BY deleted_at, id LIMIT n
+DROP INDEX IF EXISTS idx_vente_tombstones;
+CREATE INDEX IF NOT EXISTS idx_vente_tombstones ON vente(deleted_at, id) WHERE deleted = true;
+COMMENT ON INDEX idx_vente_tombstones IS 'Index partiel pour la purge des tombstones expirés';
+
+-- 10. Index sur la version HLC (high-water mark de la synchronisation incrémentale)
+--     Index d'expression : même calcul que ROW_VERSION (MultiVenteService), les lignes antérieures
+--     à la colonne version comptent par leur updated_at. Sert le WHERE <version> > ? du mode
+--     delta et le max(<version>) des passages de réparation
+DROP INDEX IF EXISTS idx_vente_version;
+CREATE INDEX IF NOT EXISTS idx_vente_row_version
+    ON vente((coalesce(version, floor(extract(epoch FROM updated_at) * 1000)::bigint << 16)));
+COMMENT ON INDEX idx_vente_row_version IS 'Index pour la synchronisation incrémentale par version HLC';
+
 -- ===============================================
 -- ANALYSE ET STATISTIQUES DE LA TABLE
 -- ===============================================
@@ -124,6 +152,20 @@ IMPACT DES INDEX :
    - Utilisé par : Recherches de produits spécifiques
    - Gain estimé : 40-60% sur les recherches textuelles
 
+7. idx_vente_listing :
+   - Utilisé par : findFirstPage()/findPageAfter()/findUndatedPage()/findUndatedPageAfter()
+     (page d'accueil et /api/ventes)
+   - Chaque page lit au plus n lignes par région, quelle que soit la taille de la table
+
+8. idx_vente_aggregate :
+   - Utilisé par : MultiVenteService.aggregate() (GROUP BY produit / date_vente sur une période)
+     et MultiVenteService.streamActive() (export en masse trié par date_vente, id)
+   - Chaque région ne lit que sa part des UUID, dans l'index
+
+9. idx_vente_tombstones :
+   - Utilisé par : MultiVenteService.findExpiredTombstones() (TombstonePurger)
+   - Ne contient que les tombstones : la purge ne parcourt pas les ventes actives
+
 MAINTENANCE :
 
 - Les index sont mis à jour automatiquement lors des INSERT/UPDATE/DELETE
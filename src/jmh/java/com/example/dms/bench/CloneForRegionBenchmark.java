@@ -0,0 +1,40 @@
+package com.example.dms.bench;
+
+import com.example.dms.model.Vente;
+import com.example.dms.service.LwwMerge;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût unitaire d'une copie de vente préparée pour la propagation (LwwMerge.cloneForRegion).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CloneForRegionBenchmark {
+
+    private Vente source;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = new Vente();
+        source.setId(UUID.randomUUID());
+        source.setProduit("Riz");
+        source.setMontant(12_500.0);
+        source.setDateVente(LocalDate.of(2025, 3, 14));
+        source.setRegion("Dakar");
+        source.setUpdatedAt(LocalDateTime.of(2025, 3, 14, 10, 30));
+    }
+
+    @Benchmark
+    public Vente cloneForRegion() {
+        return LwwMerge.cloneForRegion(source, "Thies");
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.dms.bench;
+
+import com.example.dms.DmsApplication;
+import com.example.dms.config.RegionRegistry;
+import com.example.dms.model.Vente;
+import com.example.dms.model.VentePage;
+import com.example.dms.service.MonitoringService;
+import com.example.dms.service.MultiVenteService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lecture globale paginée MultiVenteService.findPage() sur trois bases H2 en mémoire (mode
+ * PostgreSQL) qui remplacent Dakar, Thiès et Saint-Louis. Le cache "ventes" est vidé avant
+ * chaque appel : on mesure la lecture des bases (requêtes keyset, puis mergePages), pas le cache.
+ * readMode compare la page d'une seule région (replica, bases synchronisées au démarrage) aux
+ * pages de toutes les régions fusionnées (merged) ; firstPage part du début de la liste,
+ * middlePage d'un curseur situé au milieu.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class FindPageBenchmark {
+
+    // Clés datasource des régions de application.yml (regions[].datasource)
+    private static final List<String> DATA_SOURCES = List.of("dakar", "thies", "stl");
+
+    private static final String INSERT_SQL = "INSERT INTO vente "
+            + "(id, date_vente, montant, produit, region, updated_at, deleted, deleted_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Param({"10000", "100000", "1000000"})
+    int rows;
+
+    @Param({"0.9"})
+    double overlap;
+
+    @Param({"replica", "merged"})
+    String readMode;
+
+    @Param({"50", "500"})
+    int pageSize;
+
+    private ConfigurableApplicationContext context;
+    private MultiVenteService multi;
+    private Cache ventesCache;
+    private VentePage.Cursor middle;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        context = new SpringApplicationBuilder(DmsApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(arguments());
+        multi = context.getBean(MultiVenteService.class);
+        ventesCache = context.getBean(CacheManager.class).getCache("ventes");
+
+        // Laisser passer la synchronisation lancée au démarrage (bases encore vides)
+        MonitoringService monitoring = context.getBean(MonitoringService.class);
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (completedSyncs(monitoring) == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        Map<String, Map<UUID, Vente>> data = VenteDataSets.generate(rows, overlap, 0.0, 42L);
+        data.forEach(this::load);
+        middle = middleCursor(data);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public VentePage firstPage() {
+        ventesCache.clear();
+        return multi.findPage(null, pageSize);
+    }
+
+    @Benchmark
+    public VentePage middlePage() {
+        ventesCache.clear();
+        return multi.findPage(middle, pageSize);
+    }
+
+    // Curseur de la vente située au milieu de l'ordre de la liste (date_vente décroissante)
+    private static VentePage.Cursor middleCursor(Map<String, Map<UUID, Vente>> data) {
+        Map<UUID, Vente> all = new HashMap<>();
+        data.values().forEach(all::putAll);
+        List<Vente> sorted = new ArrayList<>(all.values());
+        sorted.sort(Comparator.comparing(Vente::getDateVente).reversed());
+        return VentePage.Cursor.of(sorted.get(sorted.size() / 2));
+    }
+
+    // Arguments de ligne de commande : ils priment sur application.yml (pas les propriétés par défaut)
+    private String[] arguments() {
+        List<String> props = new ArrayList<>(List.of(
+                "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "sync.mode=full",
+                "sync.interval=3600000",
+                "sync.outbox.enabled=false",
+                "reads.mode=" + readMode,
+                "reads.max-staleness-ms=86400000",
+                "sync.queue.dir=target/bench-replication-queue"));
+        DATA_SOURCES.forEach(ds -> {
+            String prefix = "spring.datasource." + ds + ".";
+            props.add(prefix + "jdbc-url=jdbc:h2:mem:bench_" + ds + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+            props.add(prefix + "username=sa");
+            props.add(prefix + "password=");
+            props.add(prefix + "driver-class-name=org.h2.Driver");
+        });
+        return props.stream().map(p -> "--" + p).toArray(String[]::new);
+    }
+
+    private void load(String region, Map<UUID, Vente> ventes) {
+        context.getBean(RegionRegistry.class).get(region).jdbc().batchUpdate(INSERT_SQL, new ArrayList<>(ventes.values()), 5_000, (ps, v) -> {
+            ps.setObject(1, v.getId());
+            ps.setObject(2, v.getDateVente(), Types.DATE);
+            ps.setObject(3, v.getMontant(), Types.DOUBLE);
+            ps.setString(4, v.getProduit());
+            ps.setString(5, region);
+            ps.setObject(6, v.getUpdatedAt(), Types.TIMESTAMP);
+            ps.setObject(7, v.getDeleted(), Types.BOOLEAN);
+            ps.setObject(8, v.getDeletedAt(), Types.TIMESTAMP);
+        });
+    }
+
+    private static int completedSyncs(MonitoringService monitoring) {
+        Map<String, Object> stats = monitoring.getStatistics();
+        return (Integer) stats.get("successfulSyncs") + (Integer) stats.get("failedSyncs");
+    }
+}
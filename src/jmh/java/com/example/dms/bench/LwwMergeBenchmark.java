@@ -0,0 +1,42 @@
+package com.example.dms.bench;
+
+import com.example.dms.model.Vente;
+import com.example.dms.service.LwwMerge;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Boucle de fusion Last-Write-Wins de SyncService (LwwMerge.merge) sur des données déjà chargées.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class LwwMergeBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int rows;
+
+    @Param({"0.9"})
+    double overlap;
+
+    @Param({"0.01", "0.1"})
+    double conflict;
+
+    private Map<String, Map<UUID, Vente>> byRegion;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        byRegion = VenteDataSets.generate(rows, overlap, conflict, 42L);
+    }
+
+    @Benchmark
+    public LwwMerge.Result merge() {
+        return LwwMerge.merge(byRegion, latest -> { });
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.dms.bench;
+
+import com.example.dms.model.Vente;
+import com.example.dms.service.LwwMerge;
+import com.example.dms.service.MergeKernel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fusion sur colonnes primitives (MergeKernel), mêmes jeux de données que LwwMergeBenchmark.
+ * Chaque appel inclut la construction et le tri des colonnes à partir des entités ;
+ * mergeAndClone ajoute la copie des lignes à propager, comme dans SyncService.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class MergeKernelBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int rows;
+
+    @Param({"0.9"})
+    double overlap;
+
+    @Param({"0.01", "0.1"})
+    double conflict;
+
+    private List<List<Vente>> byRegion;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        byRegion = new ArrayList<>();
+        VenteDataSets.generate(rows, overlap, conflict, 42L)
+                .values()
+                .forEach(m -> byRegion.add(new ArrayList<>(m.values())));
+    }
+
+    @Benchmark
+    public MergeKernel.Result merge() {
+        return MergeKernel.merge(columns(), (region, row) -> { });
+    }
+
+    @Benchmark
+    public List<List<Vente>> mergeAndClone() {
+        MergeKernel.Result result = MergeKernel.merge(columns(), (region, row) -> { });
+        List<List<Vente>> toPush = new ArrayList<>();
+        for (int t = 0; t < byRegion.size(); t++) {
+            String target = VenteDataSets.REGIONS.get(t);
+            List<Vente> copies = new ArrayList<>(result.pushCount(t));
+            for (int k = 0; k < result.pushCount(t); k++) {
+                Vente source = byRegion.get(result.sourceRegion(t, k)).get(result.sourceRow(t, k));
+                copies.add(LwwMerge.cloneForRegion(source, target));
+            }
+            toPush.add(copies);
+        }
+        return toPush;
+    }
+
+    private MergeKernel.Columns[] columns() {
+        return byRegion.stream().map(MergeKernel.Columns::of).toArray(MergeKernel.Columns[]::new);
+    }
+}
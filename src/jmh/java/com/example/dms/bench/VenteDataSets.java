@@ -0,0 +1,56 @@
+package com.example.dms.bench;
+
+import com.example.dms.model.Vente;
+import com.example.dms.service.LwwMerge;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Jeux de données synthétiques pour les benchmarks : des ventes réparties dans les trois régions.
+ *
+ * rows     : nombre d'IDs distincts
+ * overlap  : part des IDs présents dans les trois régions (les autres n'existent que dans une région)
+ * conflict : part des IDs partagés dont une copie porte une version plus récente que les deux autres
+ */
+public final class VenteDataSets {
+
+    public static final List<String> REGIONS = List.of("Dakar", "Thies", "Saint-Louis");
+
+    private static final String[] PRODUITS = {"Riz", "Huile", "Sucre", "Mil", "Arachide", "Poisson", "Oignon", "Lait"};
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2025, 1, 1, 8, 0);
+
+    private VenteDataSets() {
+    }
+
+    public static Map<String, Map<UUID, Vente>> generate(int rows, double overlap, double conflict, long seed) {
+        Random rnd = new Random(seed);
+        Map<String, Map<UUID, Vente>> byRegion = new LinkedHashMap<>();
+        REGIONS.forEach(region -> byRegion.put(region, new HashMap<>()));
+
+        for (int i = 0; i < rows; i++) {
+            Vente v = new Vente();
+            v.setId(new UUID(rnd.nextLong(), rnd.nextLong()));
+            v.setProduit(PRODUITS[rnd.nextInt(PRODUITS.length)]);
+            v.setMontant(Math.round(rnd.nextDouble() * 100_000) / 100.0);
+            v.setDateVente(LocalDate.of(2025, 1, 1).plusDays(rnd.nextInt(365)));
+            v.setUpdatedAt(BASE_TIME.plusSeconds(i));
+
+            if (rnd.nextDouble() < overlap) {
+                for (String region : REGIONS) {
+                    byRegion.get(region).put(v.getId(), LwwMerge.cloneForRegion(v, region));
+                }
+                if (rnd.nextDouble() < conflict) {
+                    Vente newer = byRegion.get(REGIONS.get(rnd.nextInt(REGIONS.size()))).get(v.getId());
+                    newer.setUpdatedAt(newer.getUpdatedAt().plusMinutes(1));
+                    newer.setMontant(newer.getMontant() + 1);
+                }
+            } else {
+                String region = REGIONS.get(rnd.nextInt(REGIONS.size()));
+                byRegion.get(region).put(v.getId(), LwwMerge.cloneForRegion(v, region));
+            }
+        }
+        return byRegion;
+    }
+}
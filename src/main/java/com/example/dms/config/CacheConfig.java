@@ -1,12 +1,16 @@
 package com.example.dms.config;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
+import java.time.Duration;
 import java.util.Arrays;
 
 @Configuration
@@ -14,21 +18,34 @@ import java.util.Arrays;
 public class CacheConfig {
 
     /**
-     * Configuration du gestionnaire de cache en mémoire
+     * Configuration du gestionnaire de cache en mémoire (Caffeine)
      * 
      * Caches configurés:
-     * - ventes : Cache pour les résultats de findAllFromAllRegions()
-     * - statistiques : Cache pour les statistiques système
+     * - ventes : Cache pour les pages de la liste globale, findPage() (page d'accueil et /api/ventes)
+     * - venteById : Cache pour findById()
+     * 
+     * Chaque cache est borné (éviction W-TinyLFU) et expire après écriture.
+     * Taille et durée se règlent par cache : cache.<nom>.maximum-size / cache.<nom>.ttl-seconds
+     * Les évictions faites dans une transaction ne s'appliquent qu'après son commit.
      */
     @Bean
-    public CacheManager cacheManager() {
+    public CacheManager cacheManager(Environment env) {
         SimpleCacheManager cacheManager = new SimpleCacheManager();
         cacheManager.setCaches(Arrays.asList(
-            new ConcurrentMapCache("ventes"),
-            new ConcurrentMapCache("statistiques"),
-            new ConcurrentMapCache("ventesByRegion")
+            buildCache(env, "ventes", 100, 30),
+            buildCache(env, "venteById", 10_000, 300)
         ));
-        return cacheManager;
+        cacheManager.initializeCaches();
+        return new TransactionAwareCacheManagerProxy(cacheManager);
     }
-}
 
+    private CaffeineCache buildCache(Environment env, String name, long defaultMaxSize, long defaultTtlSeconds) {
+        long maxSize = env.getProperty("cache." + name + ".maximum-size", Long.class, defaultMaxSize);
+        long ttl = env.getProperty("cache." + name + ".ttl-seconds", Long.class, defaultTtlSeconds);
+        return new CaffeineCache(name, Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttl))
+                .recordStats()
+                .build());
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.dms.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
@@ -13,16 +14,28 @@ public class JpaConfig {
 
     @SuppressWarnings("removal")
     @Bean
-    public EntityManagerFactoryBuilder entityManagerFactoryBuilder() {
+    public EntityManagerFactoryBuilder entityManagerFactoryBuilder(
+            @Value("${spring.jpa.database-platform:org.hibernate.dialect.PostgreSQLDialect}") String dialect) {
         HibernateJpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
         vendorAdapter.setGenerateDdl(true);
         vendorAdapter.setShowSql(true);
 
         Map<String, Object> properties = new HashMap<>();
         properties.put("hibernate.hbm2ddl.auto", "update");
-        properties.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+        properties.put("hibernate.dialect", dialect);
+        // Batching JDBC : regroupe les INSERT/UPDATE d'une même transaction en un aller-retour
+        properties.put("hibernate.jdbc.batch_size", 50);
+        properties.put("hibernate.order_inserts", true);
+        properties.put("hibernate.order_updates", true);
+        properties.put("hibernate.jdbc.batch_versioned_data", true);
 
         return new EntityManagerFactoryBuilder(vendorAdapter, properties, null);
     }
+
+    // Beans d'accès aux bases régionales, déclarés à partir de la topologie (regions)
+    @Bean
+    public static RegionBeansRegistrar regionBeansRegistrar() {
+        return new RegionBeansRegistrar();
+    }
 }
 
@@ -0,0 +1,100 @@
+package com.example.dms.config;
+
+import com.example.dms.repository.VenteRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactoryBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+
+import javax.sql.DataSource;
+import java.util.function.Supplier;
+
+/**
+ * Déclare, pour chaque région de la topologie, les beans d'accès à sa base
+ * (<ds> = clé datasource de la région, ex. "dakar") :
+ *   <ds>DataSource, <ds>EntityManagerFactory, <ds>EntityManager, <ds>TransactionManager,
+ *   <ds>JdbcTemplate et <ds>VenteRepository.
+ *
+ * Ajouter une région revient à ajouter une entrée sous "regions" et ses réglages
+ * sous spring.datasource.<ds>, sans code.
+ */
+public class RegionBeansRegistrar implements BeanDefinitionRegistryPostProcessor, EnvironmentAware {
+
+    private Environment environment;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) {
+        BeanFactory beanFactory = (BeanFactory) registry;
+        for (RegionDefinition region : RegionDefinition.load(environment)) {
+            String ds = region.datasource();
+
+            register(registry, ds + "DataSource", HikariDataSource.class,
+                    () -> dataSource(region, beanFactory));
+
+            register(registry, ds + "EntityManagerFactory", LocalContainerEntityManagerFactoryBean.class,
+                    () -> beanFactory.getBean(EntityManagerFactoryBuilder.class)
+                            .dataSource(beanFactory.getBean(ds + "DataSource", DataSource.class))
+                            .packages("com.example.dms.model") // Vente, VenteOutbox, VentePurged, SyncLease, SyncMember
+                            .persistenceUnit(ds + "PU")
+                            .build());
+
+            register(registry, ds + "EntityManager", EntityManager.class,
+                    () -> SharedEntityManagerCreator.createSharedEntityManager(
+                            beanFactory.getBean(ds + "EntityManagerFactory", EntityManagerFactory.class)));
+
+            register(registry, ds + "TransactionManager", JpaTransactionManager.class,
+                    () -> new JpaTransactionManager(beanFactory.getBean(ds + "EntityManagerFactory", EntityManagerFactory.class)));
+
+            // JDBC direct sur la même base (propagation en masse), participe aux transactions JPA
+            register(registry, ds + "JdbcTemplate", JdbcTemplate.class,
+                    () -> new JdbcTemplate(beanFactory.getBean(ds + "DataSource", DataSource.class)));
+
+            // Repository Spring Data : mêmes requêtes pour toutes les régions (VenteRepository)
+            registry.registerBeanDefinition(ds + "VenteRepository", BeanDefinitionBuilder
+                    .rootBeanDefinition(JpaRepositoryFactoryBean.class)
+                    .addConstructorArgValue(VenteRepository.class)
+                    .addPropertyReference("entityManager", ds + "EntityManager")
+                    .addPropertyValue("transactionManager", ds + "TransactionManager")
+                    .getBeanDefinition());
+        }
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+    }
+
+    // Pool HikariCP : réglages sous spring.datasource.<ds> (maximum-pool-size, connection-timeout...)
+    // Le nom du pool (nom de la région) sert de tag "pool" aux métriques hikaricp.*
+    private HikariDataSource dataSource(RegionDefinition region, BeanFactory beanFactory) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(region.name());
+        Binder.get(environment).bind("spring.datasource." + region.datasource(), Bindable.ofInstance(dataSource));
+        dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(beanFactory.getBean(MeterRegistry.class)));
+        return dataSource;
+    }
+
+    private static <T> void register(BeanDefinitionRegistry registry, String name, Class<T> type, Supplier<T> supplier) {
+        registry.registerBeanDefinition(name, BeanDefinitionBuilder.genericBeanDefinition(type, supplier).getBeanDefinition());
+    }
+}
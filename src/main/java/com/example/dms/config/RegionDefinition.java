@@ -0,0 +1,27 @@
+package com.example.dms.config;
+
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+
+/**
+ * Une région de la topologie, déclarée dans application.yml :
+ *
+ * regions:
+ *   - name: Dakar          (nom affiché, stocké dans la colonne region)
+ *     datasource: dakar    (clé des réglages sous spring.datasource.<datasource> et préfixe des beans)
+ */
+public record RegionDefinition(String name, String datasource) {
+
+    public static List<RegionDefinition> load(Environment environment) {
+        List<RegionDefinition> regions = Binder.get(environment)
+                .bind("regions", Bindable.listOf(RegionDefinition.class))
+                .orElse(List.of());
+        if (regions.isEmpty()) {
+            throw new IllegalStateException("Aucune région déclarée (propriété regions)");
+        }
+        return regions;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.dms.config;
+
+import com.example.dms.repository.VenteRepository;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registre des régions : accès, par nom de région, aux beans déclarés par RegionBeansRegistrar.
+ * L'ordre est celui de la configuration.
+ */
+@Component
+public class RegionRegistry {
+
+    public record Region(String name, String datasource, VenteRepository repository,
+                         JdbcTemplate jdbc, TransactionTemplate tx) {}
+
+    private final Map<String, Region> regions = new LinkedHashMap<>();
+    private final List<String> names;
+
+    public RegionRegistry(Environment environment, BeanFactory beanFactory) {
+        for (RegionDefinition definition : RegionDefinition.load(environment)) {
+            String ds = definition.datasource();
+            regions.put(definition.name(), new Region(definition.name(), ds,
+                    beanFactory.getBean(ds + "VenteRepository", VenteRepository.class),
+                    beanFactory.getBean(ds + "JdbcTemplate", JdbcTemplate.class),
+                    new TransactionTemplate(beanFactory.getBean(ds + "TransactionManager", PlatformTransactionManager.class))));
+        }
+        this.names = List.copyOf(regions.keySet());
+    }
+
+    public List<String> names() {
+        return names;
+    }
+
+    public Region get(String name) {
+        Region region = regions.get(name);
+        if (region == null) throw new IllegalArgumentException("Région inconnue : " + name);
+        return region;
+    }
+}
@@ -1,13 +1,37 @@
 package com.example.dms.controller;
 
+import com.example.dms.config.RegionRegistry;
+import com.example.dms.model.BulkResult;
+import com.example.dms.model.RegionalResult;
 import com.example.dms.model.Vente;
+import com.example.dms.model.VentePage;
+import com.example.dms.model.VenteRollup;
+import com.example.dms.service.AnalyticsService;
 import com.example.dms.service.MultiVenteService;
-import com.example.dms.service.SyncService;
 import com.example.dms.service.MonitoringService;
+import com.example.dms.service.SnapshotService;
+import com.example.dms.service.SyncCoordinator;
+import com.example.dms.service.VenteBulkService;
+import com.example.dms.service.VenteSnapshot;
+import com.example.dms.service.WriteThrottle;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -15,30 +39,51 @@ import java.util.UUID;
 public class VenteController {
 
     private final MultiVenteService multi;
-    private final SyncService sync;
+    private final SyncCoordinator sync;
     private final MonitoringService monitoring;
+    private final RegionRegistry regions;
+    private final AnalyticsService analytics;
+    private final VenteBulkService bulk;
+    private final SnapshotService snapshots;
+    private final WriteThrottle throttle;
 
-    public VenteController(MultiVenteService multi, SyncService sync, MonitoringService monitoring) {
+    // Taille de page par défaut de la liste, et taille max acceptée par l'API
+    private final int pageSize;
+    private final int maxPageSize;
+
+    public VenteController(MultiVenteService multi, SyncCoordinator sync, MonitoringService monitoring,
+                           RegionRegistry regions, AnalyticsService analytics, VenteBulkService bulk,
+                           SnapshotService snapshots, WriteThrottle throttle,
+                           @Value("${listing.page-size:50}") int pageSize,
+                           @Value("${listing.max-page-size:500}") int maxPageSize) {
         this.multi = multi;
         this.sync = sync;
         this.monitoring = monitoring;
+        this.regions = regions;
+        this.analytics = analytics;
+        this.bulk = bulk;
+        this.snapshots = snapshots;
+        this.throttle = throttle;
+        this.pageSize = pageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     @GetMapping("/")
-    public String index(Model model) {
-        model.addAttribute("ventes", multi.findAllFromAllRegions());
+    public String index(@RequestParam(required = false) String after, Model model) {
+        VentePage page = multi.findPage(cursor(after), pageSize);
+        model.addAttribute("ventes", page.ventes());
+        model.addAttribute("nextCursor", page.nextCursor());
+        model.addAttribute("unavailableRegions", page.unavailableRegions());
+        model.addAttribute("after", after);
         model.addAttribute("vente", new Vente());
+        model.addAttribute("regions", regions.names());
         model.addAttribute("stats", monitoring.getStatistics());
         return "index";
     }
 
     @PostMapping("/add")
     public String add(@ModelAttribute Vente vente, @RequestParam String region) {
-        switch (region) {
-            case "Dakar" -> multi.saveToDakar(vente);
-            case "Thies" -> multi.saveToThies(vente);
-            case "Saint-Louis" -> multi.saveToStl(vente);
-        }
+        multi.save(region, vente);
         monitoring.recordVenteCreated();
         return "redirect:/";
     }
@@ -48,11 +93,7 @@ public class VenteController {
                         @ModelAttribute Vente vente, 
                         @RequestParam String region) {
         UUID uuid = UUID.fromString(id);
-        switch (region) {
-            case "Dakar" -> multi.updateInDakar(uuid, vente);
-            case "Thies" -> multi.updateInThies(uuid, vente);
-            case "Saint-Louis" -> multi.updateInStl(uuid, vente);
-        }
+        multi.update(region, uuid, vente);
         monitoring.recordVenteUpdated();
         return "redirect:/";
     }
@@ -60,18 +101,15 @@ public class VenteController {
     @PostMapping("/delete")
     public String delete(@RequestParam String id, @RequestParam String region) {
         UUID uuid = UUID.fromString(id);
-        switch (region) {
-            case "Dakar" -> multi.deleteFromDakar(uuid);
-            case "Thies" -> multi.deleteFromThies(uuid);
-            case "Saint-Louis" -> multi.deleteFromStl(uuid);
-        }
+        multi.delete(region, uuid);
         monitoring.recordVenteDeleted();
         return "redirect:/";
     }
 
     @PostMapping("/sync")
     public String sync() {
-        sync.manualSync();
+        // Lancée tout de suite, ou regroupée avec le cycle en cours d'exécution (jamais deux à la fois)
+        sync.requestSync();
         return "redirect:/";
     }
     
@@ -79,13 +117,158 @@ public class VenteController {
     @GetMapping("/api/stats")
     @ResponseBody
     public Map<String, Object> getStats() {
-        return monitoring.getStatistics();
+        Map<String, Object> stats = monitoring.getStatistics();
+        stats.put("snapshot", snapshotInfo());
+        return stats;
+    }
+    
+    // 🎚️ Réglage à chaud du débit des propagations (écritures de synchronisation et de réplication)
+    //    POST /api/throttle?region=Dakar&maxRate=2000&minRate=100&enabled=true (tous facultatifs, sans region : toutes)
+    @PostMapping("/api/throttle")
+    @ResponseBody
+    public Map<String, Object> configureThrottle(@RequestParam(required = false) String region,
+                                                 @RequestParam(required = false) Boolean enabled,
+                                                 @RequestParam(required = false) Double maxRate,
+                                                 @RequestParam(required = false) Double minRate) {
+        throttle.configure(region, enabled, maxRate, minRate);
+        return throttle.state();
+    }
+    
+    // 📄 Liste paginée des ventes (API JSON) : suivre nextCursor via ?after=... jusqu'à null
+    @GetMapping("/api/ventes")
+    @ResponseBody
+    public VentePage listVentes(@RequestParam(required = false) String after,
+                                @RequestParam(required = false) Integer size) {
+        int effectiveSize = size == null ? pageSize : Math.max(1, Math.min(size, maxPageSize));
+        return multi.findPage(cursor(after), effectiveSize);
+    }
+    
+    // 📦 Import en masse : corps brut CSV ou binaire, lu en flux et écrit par lots (COPY)
+    //    POST /api/ventes/import?region=Dakar&format=csv|binary ; retourne lignes, durée et lignes/s
+    @PostMapping("/api/ventes/import")
+    @ResponseBody
+    public BulkResult importVentes(@RequestParam String region,
+                                   @RequestParam(defaultValue = "csv") String format,
+                                   InputStream body) throws IOException {
+        return bulk.importVentes(region, VenteBulkService.Format.parse(format), body);
+    }
+
+    // 📦 Export en masse des ventes actives, écrit en flux depuis un curseur JDBC
+    //    GET /api/ventes/export?format=csv|binary&region=Dakar&from=2025-01-01&to=2025-01-31 (tous facultatifs)
+    //    Débit (lignes/s) consultable ensuite dans /api/stats (bulk.export)
+    @GetMapping("/api/ventes/export")
+    public ResponseEntity<StreamingResponseBody> exportVentes(@RequestParam(defaultValue = "csv") String format,
+                                                              @RequestParam(required = false) String region,
+                                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        VenteBulkService.Format f = VenteBulkService.Format.parse(format);
+        String source = bulk.exportRegion(region);
+        StreamingResponseBody body = out -> bulk.exportVentes(source, f, from, to, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(f.contentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"ventes-" + source + "." + f.extension() + "\"")
+                .body(body);
+    }
+    
+    // 📈 Agrégats de ventes pré-calculés (API JSON) : total, par région et par produit
+    @GetMapping("/api/analytics/summary")
+    @ResponseBody
+    public Map<String, Object> analyticsSummary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("total", analytics.total());
+        summary.put("regions", analytics.byRegion());
+        summary.put("produits", analytics.byProduit());
+        // Régions pas encore chargées au démarrage : agrégats possiblement incomplets
+        summary.put("pendingRegions", analytics.pendingRegions());
+        return summary;
+    }
+
+    // 📈 Agrégats par jour, sur une période facultative (?from=2025-01-01&to=2025-01-31)
+    @GetMapping("/api/analytics/daily")
+    @ResponseBody
+    public List<VenteRollup> analyticsDaily(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return analytics.byDay(from, to);
+    }
+
+    // 📈 Agrégats détaillés par (région, produit, jour), chaque filtre étant facultatif
+    @GetMapping("/api/analytics/rollups")
+    @ResponseBody
+    public List<VenteRollup> analyticsRollups(@RequestParam(required = false) String region,
+                                              @RequestParam(required = false) String produit,
+                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return analytics.rollups(region, produit, from, to);
+    }
+    
+    // 📈 Agrégation ad hoc calculée dans les bases régionales (GROUP BY réparti)
+    //    ?groupBy=produit|jour&from=2025-01-01&to=2025-01-31 ; unavailableRegions non vide = résultat partiel
+    //    asOf : toutes les ventes écrites avant cet instant sont comptées (au pire reads.max-staleness-ms de retard)
+    @GetMapping("/api/analytics/query")
+    @ResponseBody
+    public RegionalResult<List<VenteRollup>> analyticsQuery(@RequestParam(defaultValue = "produit") String groupBy,
+                                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return multi.aggregate(groupBy, from, to);
     }
     
+    // 🗂️ Instantané global en mémoire (publié à chaque synchronisation) : aucune lecture des bases
+    //    Ventes actives filtrées et paginées : ?produit=Riz&region=Dakar&from=...&to=...&after=...&size=...
+    @GetMapping("/api/snapshot/ventes")
+    @ResponseBody
+    public VentePage snapshotVentes(@RequestParam(required = false) String after,
+                                    @RequestParam(required = false) Integer size,
+                                    @RequestParam(required = false) String produit,
+                                    @RequestParam(required = false) String region,
+                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        int effectiveSize = size == null ? pageSize : Math.max(1, Math.min(size, maxPageSize));
+        return snapshot().page(cursor(after), effectiveSize, new VenteSnapshot.Filter(produit, region, from, to));
+    }
+
+    // 🗂️ Agrégats calculés sur l'instantané : ?groupBy=produit|region|jour (+ mêmes filtres)
+    @GetMapping("/api/snapshot/aggregate")
+    @ResponseBody
+    public List<VenteRollup> snapshotAggregate(@RequestParam(defaultValue = "produit") String groupBy,
+                                               @RequestParam(required = false) String produit,
+                                               @RequestParam(required = false) String region,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return snapshot().aggregate(groupBy, new VenteSnapshot.Filter(produit, region, from, to));
+    }
+
+    // Curseur de pagination reçu en paramètre ("date_id") ; mal formé : 400 (badRequest)
+    private static VentePage.Cursor cursor(String after) {
+        return after == null || after.isBlank() ? null : VentePage.Cursor.parse(after);
+    }
+
+    private VenteSnapshot snapshot() {
+        return snapshots.current().orElseThrow(() -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                "Instantané global pas encore construit (première synchronisation en cours)"));
+    }
+
+    private Map<String, Object> snapshotInfo() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        snapshots.current().ifPresent(s -> {
+            info.put("ventes", s.size());
+            info.put("asOf", s.asOf());
+        });
+        return info;
+    }
+    
+    // ⚠️ Requête invalide : région inconnue, format, curseur, identifiant ou fichier importé mal formé.
+    //    400 avec le message de l'erreur, au lieu d'une erreur serveur
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ProblemDetail> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
     // 📊 Page dédiée aux statistiques
     @GetMapping("/stats")
     public String statsPage(Model model) {
         model.addAttribute("stats", monitoring.getStatistics());
+        model.addAttribute("analytics", analytics.byRegion());
+        model.addAttribute("snapshot", snapshotInfo());
         return "stats";
     }
 }
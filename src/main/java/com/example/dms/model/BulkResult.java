@@ -0,0 +1,13 @@
+package com.example.dms.model;
+
+/**
+ * Bilan d'un import ou d'un export en masse : lignes transférées, durée et débit.
+ */
+public record BulkResult(String direction, String region, String format, long rows, long durationMs, double rowsPerSecond) {
+
+    public static BulkResult of(String direction, String region, String format, long rows, long durationNanos) {
+        double seconds = durationNanos / 1e9;
+        return new BulkResult(direction, region, format, rows, durationNanos / 1_000_000,
+                seconds > 0 ? rows / seconds : 0);
+    }
+}
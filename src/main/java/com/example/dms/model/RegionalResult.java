@@ -0,0 +1,21 @@
+package com.example.dms.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Résultat d'une lecture sur plusieurs régions.
+ * unavailableRegions liste les régions qui n'ont pas pu être lues : le résultat est alors partiel.
+ * asOf, quand la lecture le garantit : toutes les écritures antérieures sont prises en compte
+ * (hors régions indisponibles) ; les plus récentes peuvent manquer.
+ */
+public record RegionalResult<T>(T value, List<String> unavailableRegions, LocalDateTime asOf) {
+
+    public RegionalResult(T value, List<String> unavailableRegions) {
+        this(value, unavailableRegions, null);
+    }
+
+    public boolean partial() {
+        return !unavailableRegions.isEmpty();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.dms.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// 🔹 Bail d'un shard de synchronisation (ShardLeaseManager)
+//    Le shard est un préfixe d'UUID ; l'instance "owner" le synchronise jusqu'à "expires_at".
+//    "synced_at" : début du dernier cycle sans erreur de son propriétaire, selon now() de la base
+//    (toutes les régions ont reçu les versions du shard écrites avant cet instant)
+@Entity
+@Table(name = "sync_lease")
+public class SyncLease {
+
+    @Id
+    private Integer shard;
+
+    @Column(name = "owner")
+    private String owner;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "synced_at")
+    private LocalDateTime syncedAt;
+
+    public Integer getShard() {
+        return shard;
+    }
+
+    public void setShard(Integer shard) {
+        this.shard = shard;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public LocalDateTime getSyncedAt() {
+        return syncedAt;
+    }
+
+    public void setSyncedAt(LocalDateTime syncedAt) {
+        this.syncedAt = syncedAt;
+    }
+}
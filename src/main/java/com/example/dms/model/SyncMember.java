@@ -0,0 +1,33 @@
+package com.example.dms.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// 🔹 Instance de l'application participant à la synchronisation (ShardLeaseManager)
+//    Une instance sans battement de cœur depuis la durée d'un bail est considérée morte
+@Entity
+@Table(name = "sync_member")
+public class SyncMember {
+
+    @Id
+    private String instance;
+
+    @Column(name = "heartbeat_at", nullable = false)
+    private LocalDateTime heartbeatAt;
+
+    public String getInstance() {
+        return instance;
+    }
+
+    public void setInstance(String instance) {
+        this.instance = instance;
+    }
+
+    public LocalDateTime getHeartbeatAt() {
+        return heartbeatAt;
+    }
+
+    public void setHeartbeatAt(LocalDateTime heartbeatAt) {
+        this.heartbeatAt = heartbeatAt;
+    }
+}
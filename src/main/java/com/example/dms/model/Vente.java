@@ -18,6 +18,8 @@ public class Vente {
     private String produit;
     private String region;
 
+    // Date de dernière modification, pour l'affichage : l'ordre des versions et la synchronisation
+    // incrémentale reposent sur version
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
@@ -27,15 +29,32 @@ public class Vente {
     @Column(name = "deleted_at")
     private LocalDateTime deletedAt;
 
+    // 🔹 Version Last-Write-Wins (horloge logique hybride) et région où elle a été écrite
+    //    Nulle pour les lignes antérieures : version dérivée de updated_at (HybridLogicalClock)
+    @Column(name = "version")
+    private Long version;
+
+    @Column(name = "origin_region")
+    private String originRegion;
+
     // 🔹 Constructeur par défaut
     public Vente() {
         this.id = UUID.randomUUID();
     }
 
-    // 🔹 Méthode pour mettre à jour automatiquement le timestamp
+    // 🔹 Horodatage automatique à la première écriture
+    //    Une copie propagée par la synchronisation garde l'updatedAt de sa version source,
+    //    sinon chaque propagation produirait une "nouvelle" modification au cycle suivant
     @PrePersist
     @PreUpdate
     public void updateTimestamp() {
+        if (this.updatedAt == null) {
+            this.updatedAt = LocalDateTime.now();
+        }
+    }
+
+    // 🔹 Marquer une modification locale (nouvelle version pour Last-Write-Wins)
+    public void touch() {
         this.updatedAt = LocalDateTime.now();
     }
 
@@ -104,6 +123,28 @@ public class Vente {
         this.deletedAt = deletedAt;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public String getOriginRegion() {
+        return originRegion;
+    }
+
+    public void setOriginRegion(String originRegion) {
+        this.originRegion = originRegion;
+    }
+
+    // 🔹 Nouvelle version écrite dans une région
+    public void stamp(long version, String originRegion) {
+        this.version = version;
+        this.originRegion = originRegion;
+    }
+
     // 🔹 Méthode helper pour marquer comme supprimé (soft delete)
     public void markAsDeleted() {
         this.deleted = true;
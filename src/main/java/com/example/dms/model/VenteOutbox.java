@@ -0,0 +1,43 @@
+package com.example.dms.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// 🔹 Événement de modification (outbox transactionnelle)
+//    Écrit dans la même transaction que la vente modifiée, puis consommé par OutboxReplicator
+//    qui recopie la version courante de la vente vers les autres régions
+@Entity
+@Table(name = "vente_outbox")
+public class VenteOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "vente_id", nullable = false)
+    private UUID venteId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public UUID getVenteId() {
+        return venteId;
+    }
+
+    public void setVenteId(UUID venteId) {
+        this.venteId = venteId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.dms.model;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Une page de la liste globale des ventes (pagination par curseur sur date_vente, id).
+ * nextCursor vaut null sur la dernière page.
+ * unavailableRegions liste les régions absentes de la page (disjoncteur ouvert ou erreur).
+ */
+public record VentePage(List<Vente> ventes, String nextCursor, List<String> unavailableRegions) {
+
+    /**
+     * Position dans la liste : la page suivante commence strictement après (date, id).
+     * Forme texte "date_id", par exemple "2025-01-31_0d5c...". Les ventes sans date sont en fin
+     * de liste (date_vente DESC NULLS LAST) : leur curseur a une date vide, "_0d5c...".
+     */
+    public record Cursor(LocalDate date, UUID id) {
+
+        public static Cursor of(Vente v) {
+            return new Cursor(v.getDateVente(), v.getId());
+        }
+
+        // 🔹 Curseur reçu d'un client : IllegalArgumentException (400) s'il est mal formé
+        public static Cursor parse(String cursor) {
+            int sep = cursor.indexOf('_');
+            if (sep < 0) throw new IllegalArgumentException("Curseur invalide : " + cursor);
+            try {
+                LocalDate date = sep == 0 ? null : LocalDate.parse(cursor.substring(0, sep));
+                return new Cursor(date, UUID.fromString(cursor.substring(sep + 1)));
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                throw new IllegalArgumentException("Curseur invalide : " + cursor, e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return (date != null ? date.toString() : "") + "_" + id;
+        }
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean partial() {
+        return !unavailableRegions.isEmpty();
+    }
+}
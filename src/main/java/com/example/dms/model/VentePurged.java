@@ -0,0 +1,46 @@
+package com.example.dms.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// 🔹 Vente définitivement purgée (tombstone compacté par TombstonePurger)
+//    Garde la version du tombstone : une copie plus ancienne arrivant ensuite (file de
+//    réplication, outbox en retard) est ignorée au lieu de ressusciter la vente
+@Entity
+@Table(name = "vente_purged")
+public class VentePurged {
+
+    @Id
+    private UUID id;
+
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @Column(name = "purged_at", nullable = false)
+    private LocalDateTime purgedAt;
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public LocalDateTime getPurgedAt() {
+        return purgedAt;
+    }
+
+    public void setPurgedAt(LocalDateTime purgedAt) {
+        this.purgedAt = purgedAt;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.dms.model;
+
+import java.time.LocalDate;
+
+/**
+ * Agrégat pré-calculé des ventes actives d'un groupe.
+ * Les dimensions non utilisées par le regroupement sont nulles
+ * (ex. région seule : produit et day à null).
+ */
+public record VenteRollup(String region, String produit, LocalDate day,
+                          long count, double sum, Double min, Double max) {
+
+    public double average() {
+        return count == 0 ? 0 : sum / count;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.dms.repository;
+
+import com.example.dms.model.Vente;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Requêtes communes à toutes les bases régionales.
+ * RegionBeansRegistrar crée une instance par région (<ds>VenteRepository), liée à sa propre base.
+ */
+@NoRepositoryBean
+public interface VenteRepository extends JpaRepository<Vente, UUID> {
+
+    // 🔹 Pagination par curseur (keyset) sur (date_vente, id), plus récentes d'abord et ventes sans
+    //    date en fin de liste (date_vente DESC NULLS LAST, id DESC)
+    //    Index conseillé : idx_vente_listing (voir optimization_indexes.sql)
+    @Query(value = "SELECT * FROM vente WHERE deleted = false "
+            + "ORDER BY date_vente DESC NULLS LAST, id DESC LIMIT :limit", nativeQuery = true)
+    List<Vente> findFirstPage(@Param("limit") int limit);
+
+    // Ventes datées après le curseur ; la comparaison de lignes écarte les dates NULL, que l'appelant
+    // complète avec findUndatedPage quand la page est courte
+    @Query(value = "SELECT * FROM vente WHERE deleted = false "
+            + "AND (date_vente, id) < (:dateVente, :id) "
+            + "ORDER BY date_vente DESC NULLS LAST, id DESC LIMIT :limit", nativeQuery = true)
+    List<Vente> findPageAfter(@Param("dateVente") LocalDate dateVente,
+                              @Param("id") UUID id,
+                              @Param("limit") int limit);
+
+    // 🔹 Ventes sans date (fin de liste), par id décroissant
+    @Query(value = "SELECT * FROM vente WHERE deleted = false AND date_vente IS NULL "
+            + "ORDER BY id DESC LIMIT :limit", nativeQuery = true)
+    List<Vente> findUndatedPage(@Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM vente WHERE deleted = false AND date_vente IS NULL AND id < :id "
+            + "ORDER BY id DESC LIMIT :limit", nativeQuery = true)
+    List<Vente> findUndatedPageAfter(@Param("id") UUID id, @Param("limit") int limit);
+}
@@ -0,0 +1,224 @@
+package com.example.dms.service;
+
+import com.example.dms.config.RegionRegistry;
+import com.example.dms.model.Vente;
+import com.example.dms.model.VenteRollup;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Agrégats de ventes pré-calculés (somme, nombre, min, max de montant), tenus à jour de façon
+ * incrémentale par (région, produit, jour) et par région, produit, jour et total.
+ *
+ * Chaque vente connue garde sa contribution courante. Une nouvelle version, vue à l'écriture
+ * locale, dans l'outbox ou lors de la synchronisation, retire l'ancienne contribution puis ajoute
+ * la nouvelle ; une version plus ancienne ou identique est ignorée, selon l'ordre total de
+ * HybridLogicalClock. Un tombstone retire la contribution sans en ajouter.
+ *
+ * La région d'une vente est sa région d'origine (où sa dernière version a été écrite) ;
+ * à défaut (lignes antérieures à la colonne origin_region), celle de la première version retenue.
+ *
+ * Au démarrage, chaque région est relue une fois (tombstones compris) ; une région injoignable
+ * est relue au passage suivant. Les écritures concurrentes de ce chargement convergent grâce à
+ * la même règle de version.
+ *
+ * Les montants sont cumulés en centimes (long) : retirer puis rajouter des contributions ne fait
+ * pas dériver les sommes, contrairement à des double. Mémoire : une contribution par vente vivante
+ * ou supprimée, plus un agrégat par groupe ; celle d'un tombstone est oubliée quand TombstonePurger
+ * le purge (forget), au plus tard tombstone.grace-ms après la suppression.
+ */
+@Service
+public class AnalyticsService {
+
+    private record Key(String region, String produit, LocalDate day) {}
+
+    // Contribution courante d'une vente (montant en centimes) ; key == null pour un tombstone
+    private record Contribution(Key key, long cents, long version, String origin, boolean deleted) {}
+
+    // Nombre et somme, plus les montants en multiensemble trié pour garder min/max exacts
+    // quand une contribution est retirée ; tout en centimes
+    private static final class Aggregate {
+        long count;
+        long sum;
+        final TreeMap<Long, Integer> montants = new TreeMap<>();
+
+        void add(long cents) {
+            count++;
+            sum += cents;
+            montants.merge(cents, 1, Integer::sum);
+        }
+
+        void remove(long cents) {
+            count--;
+            sum -= cents;
+            montants.computeIfPresent(cents, (m, n) -> n == 1 ? null : n - 1);
+        }
+
+        VenteRollup toRollup(String region, String produit, LocalDate day) {
+            return new VenteRollup(region, produit, day, count, sum / 100.0,
+                    montants.isEmpty() ? null : montants.firstKey() / 100.0,
+                    montants.isEmpty() ? null : montants.lastKey() / 100.0);
+        }
+    }
+
+    private final RegionRegistry regions;
+    private final RegionCircuitBreaker breaker;
+    private final boolean enabled;
+
+    private final Map<UUID, Contribution> contributions = new HashMap<>();
+    private final Map<Key, Aggregate> byKey = new HashMap<>();
+    private final Map<String, Aggregate> byRegion = new HashMap<>();
+    private final Map<String, Aggregate> byProduit = new HashMap<>();
+    private final Map<LocalDate, Aggregate> byDay = new HashMap<>();
+    private final Aggregate total = new Aggregate();
+
+    // Régions déjà chargées au démarrage
+    private final Set<String> loaded = ConcurrentHashMap.newKeySet();
+
+    public AnalyticsService(RegionRegistry regions, RegionCircuitBreaker breaker,
+                            @Value("${analytics.enabled:true}") boolean enabled) {
+        this.regions = regions;
+        this.breaker = breaker;
+        this.enabled = enabled;
+    }
+
+    // 🔹 Prendre en compte une version de vente (écriture, réplication ou synchronisation)
+    public void apply(Vente vente) {
+        if (!enabled || vente == null || vente.getId() == null) return;
+        boolean deleted = Boolean.TRUE.equals(vente.getDeleted());
+        long version = HybridLogicalClock.versionOf(vente);
+        String origin = vente.getOriginRegion();
+        long cents = vente.getMontant() != null ? Math.round(vente.getMontant() * 100) : 0;
+
+        synchronized (this) {
+            Contribution current = contributions.get(vente.getId());
+            if (current != null && HybridLogicalClock.compare(version, origin, deleted,
+                    current.version(), current.origin(), current.deleted()) <= 0) return;
+
+            Key key = null;
+            if (!deleted) {
+                // Sans origine connue, la région reste celle de la version précédente
+                String region = origin != null ? origin
+                        : current != null && current.key() != null ? current.key().region() : vente.getRegion();
+                key = new Key(region, vente.getProduit(), vente.getDateVente());
+            }
+            if (current != null && current.key() != null) {
+                update(current.key(), current.cents(), false);
+            }
+            if (key != null) {
+                update(key, cents, true);
+            }
+            contributions.put(vente.getId(), new Contribution(key, cents, version, origin, deleted));
+        }
+    }
+
+    public void applyAll(Collection<Vente> ventes) {
+        ventes.forEach(this::apply);
+    }
+
+    // 🔹 Tombstones purgés : leur contribution (déjà nulle) n'a plus besoin d'être gardée
+    public synchronized void forget(Collection<UUID> ids) {
+        ids.forEach(id -> contributions.computeIfPresent(id, (k, c) -> c.deleted() ? null : c));
+    }
+
+    private void update(Key key, long cents, boolean add) {
+        List<Aggregate> targets = List.of(
+                byKey.computeIfAbsent(key, k -> new Aggregate()),
+                byRegion.computeIfAbsent(key.region(), k -> new Aggregate()),
+                byProduit.computeIfAbsent(key.produit(), k -> new Aggregate()),
+                byDay.computeIfAbsent(key.day(), k -> new Aggregate()),
+                total);
+        for (Aggregate aggregate : targets) {
+            if (add) aggregate.add(cents); else aggregate.remove(cents);
+        }
+        if (!add) {
+            byKey.remove(key, emptyOrNull(byKey.get(key)));
+            byRegion.remove(key.region(), emptyOrNull(byRegion.get(key.region())));
+            byProduit.remove(key.produit(), emptyOrNull(byProduit.get(key.produit())));
+            byDay.remove(key.day(), emptyOrNull(byDay.get(key.day())));
+        }
+    }
+
+    // L'agrégat lui-même s'il est vide (à retirer), sinon null (Map.remove(k, null) ne retire rien)
+    private static Aggregate emptyOrNull(Aggregate aggregate) {
+        return aggregate != null && aggregate.count == 0 ? aggregate : null;
+    }
+
+    // 🔹 Chargement initial : toutes les lignes de chaque région pas encore chargée
+    @Scheduled(fixedDelayString = "${analytics.reload-ms:60000}")
+    public void loadMissingRegions() {
+        if (!enabled) return;
+        for (String region : regions.names()) {
+            if (loaded.contains(region)) continue;
+            try {
+                List<Vente> rows = breaker.call(region, () -> regions.get(region).repository().findAll());
+                applyAll(rows);
+                loaded.add(region);
+                System.out.println("📈 Agrégats : " + rows.size() + " ventes chargées depuis " + region);
+            } catch (RuntimeException e) {
+                System.err.println("⚠️ Agrégats sans " + region + " (nouvel essai plus tard) : " + e.getMessage());
+            }
+        }
+    }
+
+    // Régions pas encore chargées : les agrégats peuvent leur manquer des ventes
+    public List<String> pendingRegions() {
+        return regions.names().stream().filter(region -> !loaded.contains(region)).toList();
+    }
+
+    // 🔹 Lectures : aucune ligne brute n'est lue, seuls les agrégats sont copiés
+
+    public synchronized VenteRollup total() {
+        return total.toRollup(null, null, null);
+    }
+
+    public synchronized List<VenteRollup> byRegion() {
+        List<VenteRollup> result = new ArrayList<>();
+        byRegion.forEach((region, a) -> result.add(a.toRollup(region, null, null)));
+        result.sort(Comparator.comparing(VenteRollup::region, Comparator.nullsLast(Comparator.naturalOrder())));
+        return result;
+    }
+
+    public synchronized List<VenteRollup> byProduit() {
+        List<VenteRollup> result = new ArrayList<>();
+        byProduit.forEach((produit, a) -> result.add(a.toRollup(null, produit, null)));
+        result.sort(Comparator.comparing(VenteRollup::sum).reversed());
+        return result;
+    }
+
+    // Jours de [from, to] (bornes facultatives), dans l'ordre chronologique
+    public synchronized List<VenteRollup> byDay(LocalDate from, LocalDate to) {
+        List<VenteRollup> result = new ArrayList<>();
+        byDay.forEach((day, a) -> {
+            if (inRange(day, from, to)) result.add(a.toRollup(null, null, day));
+        });
+        result.sort(Comparator.comparing(VenteRollup::day, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return result;
+    }
+
+    // Groupes (région, produit, jour) correspondant aux filtres (chacun facultatif)
+    public synchronized List<VenteRollup> rollups(String region, String produit, LocalDate from, LocalDate to) {
+        Predicate<Key> filter = k -> (region == null || region.equals(k.region()))
+                && (produit == null || produit.equals(k.produit()))
+                && inRange(k.day(), from, to);
+        List<VenteRollup> result = new ArrayList<>();
+        byKey.forEach((k, a) -> {
+            if (filter.test(k)) result.add(a.toRollup(k.region(), k.produit(), k.day()));
+        });
+        result.sort(Comparator.comparing(VenteRollup::day, Comparator.nullsFirst(Comparator.<LocalDate>naturalOrder()))
+                .thenComparing(VenteRollup::region, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(VenteRollup::produit, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return result;
+    }
+
+    private static boolean inRange(LocalDate day, LocalDate from, LocalDate to) {
+        if (from == null && to == null) return true;
+        return day != null && (from == null || !day.isBefore(from)) && (to == null || !day.isAfter(to));
+    }
+}
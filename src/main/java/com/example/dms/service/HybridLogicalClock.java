@@ -0,0 +1,101 @@
+package com.example.dms.service;
+
+import com.example.dms.model.Vente;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Horloge logique hybride (HLC) : version des ventes pour Last-Write-Wins.
+ *
+ * Une version tient sur un long : millisecondes physiques (48 bits) suivies d'un compteur
+ * logique (16 bits). Chaque version émise est strictement supérieure à la précédente et à
+ * toute version observée : une modification l'emporte toujours sur la version qu'elle
+ * remplace, même si l'horloge du nœud retarde.
+ *
+ * Ordre total des versions d'une vente : version, puis région d'origine, puis tombstone
+ * (un tombstone l'emporte sur une version active identique). Deux copies de la même écriture
+ * sont donc égales et ne sont jamais repropagées.
+ *
+ * La partie physique suit la même échelle que updated_at (heure locale lue comme UTC, comme
+ * extract(epoch ...) dans PostgreSQL) : les lignes écrites avant la colonne version reçoivent
+ * une version dérivée de updated_at, comparable aux nouvelles.
+ */
+@Component
+public class HybridLogicalClock {
+
+    private static final int LOGICAL_BITS = 16;
+
+    private long last = Long.MIN_VALUE;
+
+    // 🔹 Nouvelle version locale
+    public synchronized long tick() {
+        last = Math.max(last + 1, physicalNow());
+        return last;
+    }
+
+    // 🔹 Nouvelle version pour une modification de "current" : strictement plus grande que celle-ci
+    public synchronized long tick(Vente current) {
+        observe(versionOf(current));
+        return tick();
+    }
+
+    // 🔹 Prendre en compte une version reçue d'une autre région
+    public synchronized void observe(long version) {
+        if (version > last) last = version;
+    }
+
+    public static long versionOf(Vente v) {
+        return v.getVersion() != null ? v.getVersion() : fromTimestamp(v.getUpdatedAt());
+    }
+
+    // 🔹 Version située "millis" millisecondes physiques avant "version" (marge de relecture)
+    public static long minusMillis(long version, long millis) {
+        return version - (millis << LOGICAL_BITS);
+    }
+
+    // 🔹 Version de l'horloge physique seule, sans les versions observées d'autres régions
+    public long now() {
+        return physicalNow();
+    }
+
+    // 🔹 Nouveau high-water mark : plus grande version lue ("latest"), sans dépasser "now" moins la
+    //    marge. Une région dont l'horloge avance ne peut pas pousser le high-water mark devant les
+    //    écritures d'une région qui retarde de moins de la marge : la relecture suivante les couvre.
+    public static long watermark(long current, long latest, long now, long overlapMillis) {
+        return Math.max(current, Math.min(latest, minusMillis(now, overlapMillis)));
+    }
+
+    // Version dérivée d'un updated_at (lignes antérieures à la colonne version)
+    public static long fromTimestamp(LocalDateTime t) {
+        if (t == null) return Long.MIN_VALUE;
+        return t.toInstant(ZoneOffset.UTC).toEpochMilli() << LOGICAL_BITS;
+    }
+
+    private static long physicalNow() {
+        return fromTimestamp(LocalDateTime.now());
+    }
+
+    // 🔹 Ordre total : < 0 si a est plus ancienne que b, 0 si ce sont les mêmes versions
+    public static int compare(long versionA, String originA, boolean deletedA,
+                              long versionB, String originB, boolean deletedB) {
+        if (versionA != versionB) return Long.compare(versionA, versionB);
+        int cmp = origin(originA).compareTo(origin(originB));
+        if (cmp != 0) return cmp;
+        return Boolean.compare(deletedA, deletedB);
+    }
+
+    public static int compare(Vente a, Vente b) {
+        return compare(versionOf(a), a.getOriginRegion(), Boolean.TRUE.equals(a.getDeleted()),
+                versionOf(b), b.getOriginRegion(), Boolean.TRUE.equals(b.getDeleted()));
+    }
+
+    public static boolean isNewer(Vente candidate, Vente current) {
+        return compare(candidate, current) > 0;
+    }
+
+    private static String origin(String origin) {
+        return origin != null ? origin : "";
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.dms.service;
+
+import com.example.dms.model.Vente;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Fusion Last-Write-Wins des versions lues dans chaque région.
+ * Pour chaque ID, la version la plus récente est retenue et une copie en est prévue
+ * pour chaque région qui ne l'a pas encore (absente ou plus ancienne).
+ *
+ * Implémentation de référence sur entités : la synchronisation utilise {@link MergeKernel},
+ * celle-ci sert de point de comparaison aux benchmarks et aux tests.
+ */
+public final class LwwMerge {
+
+    /**
+     * @param toPush    copies à écrire, par région cible
+     * @param uniqueIds nombre d'IDs distincts examinés
+     * @param newIds    IDs présents dans une seule région (ventes pas encore répliquées)
+     */
+    public record Result(Map<String, List<Vente>> toPush, int uniqueIds, int newIds) {}
+
+    private LwwMerge() {
+    }
+
+    // 🔹 byRegion : pour chaque région joignable, sa version locale de chaque ID candidat
+    //    onLatest est appelé avec la version gagnante de chaque ID
+    public static Result merge(Map<String, Map<UUID, Vente>> byRegion, Consumer<Vente> onLatest) {
+        // Union de tous les IDs
+        Set<UUID> allIds = new HashSet<>();
+        byRegion.values().forEach(m -> allIds.addAll(m.keySet()));
+
+        Map<String, List<Vente>> toPush = new LinkedHashMap<>();
+        byRegion.keySet().forEach(region -> toPush.put(region, new ArrayList<>()));
+        int newIds = 0;
+        for (UUID id : allIds) {
+            // Trouver la version la plus récente (ordre total de HybridLogicalClock,
+            // à égalité la première région l'emporte)
+            Vente latest = null;
+            for (Map<UUID, Vente> m : byRegion.values()) {
+                Vente v = m.get(id);
+                if (v != null && (latest == null || HybridLogicalClock.isNewer(v, latest))) latest = v;
+            }
+
+            if (latest == null) continue;
+            onLatest.accept(latest);
+            if (byRegion.values().stream().filter(m -> m.containsKey(id)).count() == 1) newIds++;
+
+            for (Map.Entry<String, Map<UUID, Vente>> entry : byRegion.entrySet()) {
+                Vente local = entry.getValue().get(id);
+                if (local == null || HybridLogicalClock.isNewer(latest, local)) {
+                    toPush.get(entry.getKey()).add(cloneForRegion(latest, entry.getKey()));
+                }
+            }
+        }
+        return new Result(toPush, allIds.size(), newIds);
+    }
+
+    public static Vente cloneForRegion(Vente source, String region) {
+        Vente clone = new Vente();
+        clone.setId(source.getId());
+        clone.setDateVente(source.getDateVente());
+        clone.setMontant(source.getMontant());
+        clone.setProduit(source.getProduit());
+        clone.setRegion(region);
+        clone.setUpdatedAt(source.getUpdatedAt());
+        clone.setVersion(HybridLogicalClock.versionOf(source));
+        clone.setOriginRegion(source.getOriginRegion());
+        // Copier aussi les informations de suppression (tombstone)
+        clone.setDeleted(source.getDeleted());
+        clone.setDeletedAt(source.getDeletedAt());
+        return clone;
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.dms.service;
+
+import com.example.dms.model.Vente;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Noyau de fusion Last-Write-Wins sur colonnes primitives.
+ *
+ * Chaque région est représentée par des tableaux parallèles (UUID msb/lsb, version HLC,
+ * région d'origine, indicateur deleted, position de la ligne source). Les colonnes sont triées
+ * par UUID puis fusionnées en une passe (sort-merge) : aucune allocation par ligne, seuls les
+ * tableaux de sortie grandissent par doublement.
+ *
+ * Règle de décision : l'ordre total de {@link HybridLogicalClock} (version, puis région
+ * d'origine, puis tombstone) ; à égalité complète la première région l'emporte. Une région
+ * reçoit la version gagnante si elle ne l'a pas, ou si sa copie perd face à elle : deux copies
+ * de la même écriture ne sont jamais repropagées.
+ */
+public final class MergeKernel {
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private MergeKernel() {
+    }
+
+    // 🔹 Reçoit la version gagnante de chaque ID (région, position de la ligne source)
+    @FunctionalInterface
+    public interface WinnerSink {
+        void accept(int region, int row);
+    }
+
+    // 🔹 Colonnes d'une région
+    public static final class Columns {
+        final long[] msb;
+        final long[] lsb;
+        final long[] version;
+        // Région d'origine (comparée seulement à version égale)
+        final String[] origin;
+        final boolean[] deleted;
+        final int[] rows;
+        final int size;
+
+        public Columns(long[] msb, long[] lsb, long[] version, String[] origin, boolean[] deleted) {
+            this.size = msb.length;
+            this.msb = msb;
+            this.lsb = lsb;
+            this.version = version;
+            this.origin = origin;
+            this.deleted = deleted;
+            this.rows = new int[size];
+            for (int i = 0; i < size; i++) rows[i] = i;
+        }
+
+        public static Columns of(List<Vente> ventes) {
+            int n = ventes.size();
+            long[] msb = new long[n];
+            long[] lsb = new long[n];
+            long[] version = new long[n];
+            String[] origin = new String[n];
+            boolean[] deleted = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                Vente v = ventes.get(i);
+                msb[i] = v.getId().getMostSignificantBits();
+                lsb[i] = v.getId().getLeastSignificantBits();
+                version[i] = HybridLogicalClock.versionOf(v);
+                origin[i] = v.getOriginRegion();
+                deleted[i] = Boolean.TRUE.equals(v.getDeleted());
+            }
+            return new Columns(msb, lsb, version, origin, deleted);
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    // 🔹 Résultat : pour chaque région cible, les lignes (région source, position) à y écrire
+    public static final class Result {
+        private final long[][] pushes;
+        private final int[] pushCounts;
+        private final int uniqueIds;
+        private final int newIds;
+
+        Result(long[][] pushes, int[] pushCounts, int uniqueIds, int newIds) {
+            this.pushes = pushes;
+            this.pushCounts = pushCounts;
+            this.uniqueIds = uniqueIds;
+            this.newIds = newIds;
+        }
+
+        public int pushCount(int target) {
+            return pushCounts[target];
+        }
+
+        public int sourceRegion(int target, int k) {
+            return (int) (pushes[target][k] >>> 32);
+        }
+
+        public int sourceRow(int target, int k) {
+            return (int) pushes[target][k];
+        }
+
+        // Nombre d'IDs distincts examinés
+        public int uniqueIds() {
+            return uniqueIds;
+        }
+
+        // IDs présents dans une seule région (ventes pas encore répliquées)
+        public int newIds() {
+            return newIds;
+        }
+    }
+
+    public static Result merge(Columns[] regions, WinnerSink sink) {
+        int n = regions.length;
+        for (Columns c : regions) {
+            if (!isSorted(c)) sort(c, 0, c.size - 1);
+        }
+
+        int[] pos = new int[n];
+        int[] present = new int[n];
+        long[][] pushes = new long[n][];
+        int[] pushCounts = new int[n];
+        for (int r = 0; r < n; r++) pushes[r] = new long[16];
+        int uniqueIds = 0;
+        int newIds = 0;
+
+        while (true) {
+            // Plus petit UUID parmi les têtes de colonnes
+            int first = -1;
+            for (int r = 0; r < n; r++) {
+                if (pos[r] < regions[r].size
+                        && (first < 0 || compareKey(regions[r], pos[r], regions[first], pos[first]) < 0)) {
+                    first = r;
+                }
+            }
+            if (first < 0) break;
+            long keyMsb = regions[first].msb[pos[first]];
+            long keyLsb = regions[first].lsb[pos[first]];
+
+            // Régions qui ont cet UUID, et version gagnante
+            int winner = -1;
+            int copies = 0;
+            for (int r = 0; r < n; r++) {
+                Columns c = regions[r];
+                int p = pos[r];
+                if (p < c.size && c.msb[p] == keyMsb && c.lsb[p] == keyLsb) {
+                    present[r] = p;
+                    copies++;
+                    if (winner < 0 || beats(c, p, regions[winner], present[winner])) winner = r;
+                } else {
+                    present[r] = -1;
+                }
+            }
+
+            uniqueIds++;
+            if (copies == 1) newIds++;
+            Columns w = regions[winner];
+            int wp = present[winner];
+            sink.accept(winner, w.rows[wp]);
+
+            long encoded = ((long) winner << 32) | (w.rows[wp] & 0xFFFFFFFFL);
+            for (int t = 0; t < n; t++) {
+                if (present[t] < 0 || beats(w, wp, regions[t], present[t])) {
+                    if (pushCounts[t] == pushes[t].length) pushes[t] = Arrays.copyOf(pushes[t], pushes[t].length * 2);
+                    pushes[t][pushCounts[t]++] = encoded;
+                }
+            }
+
+            for (int r = 0; r < n; r++) {
+                if (present[r] >= 0) pos[r]++;
+            }
+        }
+        return new Result(pushes, pushCounts, uniqueIds, newIds);
+    }
+
+    // La ligne (a, i) l'emporte-t-elle strictement sur la ligne (b, j) ?
+    private static boolean beats(Columns a, int i, Columns b, int j) {
+        if (a.version[i] != b.version[j]) return a.version[i] > b.version[j];
+        return HybridLogicalClock.compare(a.version[i], a.origin[i], a.deleted[i],
+                b.version[j], b.origin[j], b.deleted[j]) > 0;
+    }
+
+    // Comparaison non signée (msb puis lsb), identique à l'ordre des UUID dans PostgreSQL
+    private static int compareKey(Columns a, int i, Columns b, int j) {
+        int cmp = Long.compareUnsigned(a.msb[i], b.msb[j]);
+        return cmp != 0 ? cmp : Long.compareUnsigned(a.lsb[i], b.lsb[j]);
+    }
+
+    private static boolean isSorted(Columns c) {
+        for (int i = 1; i < c.size; i++) {
+            if (compareKey(c, i - 1, c, i) > 0) return false;
+        }
+        return true;
+    }
+
+    // Tri rapide en place des colonnes parallèles (récursion sur la plus petite partition)
+    private static void sort(Columns c, int lo, int hi) {
+        while (hi - lo > INSERTION_SORT_THRESHOLD) {
+            int mid = (lo + hi) >>> 1;
+            if (compareKey(c, mid, c, lo) < 0) swap(c, mid, lo);
+            if (compareKey(c, hi, c, lo) < 0) swap(c, hi, lo);
+            if (compareKey(c, hi, c, mid) < 0) swap(c, hi, mid);
+            long pivotMsb = c.msb[mid];
+            long pivotLsb = c.lsb[mid];
+
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (compareTo(c, i, pivotMsb, pivotLsb) < 0) i++;
+                while (compareTo(c, j, pivotMsb, pivotLsb) > 0) j--;
+                if (i <= j) swap(c, i++, j--);
+            }
+            if (j - lo < hi - i) {
+                sort(c, lo, j);
+                lo = i;
+            } else {
+                sort(c, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && compareKey(c, j - 1, c, j) > 0; j--) swap(c, j - 1, j);
+        }
+    }
+
+    private static int compareTo(Columns c, int i, long msb, long lsb) {
+        int cmp = Long.compareUnsigned(c.msb[i], msb);
+        return cmp != 0 ? cmp : Long.compareUnsigned(c.lsb[i], lsb);
+    }
+
+    private static void swap(Columns c, int i, int j) {
+        long m = c.msb[i]; c.msb[i] = c.msb[j]; c.msb[j] = m;
+        long l = c.lsb[i]; c.lsb[i] = c.lsb[j]; c.lsb[j] = l;
+        long u = c.version[i]; c.version[i] = c.version[j]; c.version[j] = u;
+        String o = c.origin[i]; c.origin[i] = c.origin[j]; c.origin[j] = o;
+        boolean d = c.deleted[i]; c.deleted[i] = c.deleted[j]; c.deleted[j] = d;
+        int r = c.rows[i]; c.rows[i] = c.rows[j]; c.rows[j] = r;
+    }
+}
@@ -1,11 +1,24 @@
 package com.example.dms.service;
 
+import com.example.dms.config.RegionRegistry;
+import com.example.dms.model.BulkResult;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 @Service
 public class MonitoringService {
@@ -14,13 +27,23 @@ public class MonitoringService {
     private final AtomicInteger totalSyncs = new AtomicInteger(0);
     private final AtomicInteger successfulSyncs = new AtomicInteger(0);
     private final AtomicInteger failedSyncs = new AtomicInteger(0);
-    private LocalDateTime lastSyncTime;
-    private LocalDateTime lastSuccessfulSync;
-    private Long lastSyncDuration;
+    private volatile LocalDateTime lastSyncTime;
+    private volatile LocalDateTime lastSuccessfulSync;
+    private volatile Long lastSyncDuration;
+    // Coordination des cycles : déclenchements planifiés sautés (cycle déjà en cours),
+    // demandes manuelles regroupées avec le cycle suivant, intervalle adaptatif courant (ms)
+    private final AtomicLong skippedSyncs = new AtomicLong(0);
+    private final AtomicLong coalescedSyncs = new AtomicLong(0);
+    private final AtomicLong syncInterval = new AtomicLong(0);
+    // Répartition des shards entre instances (ShardLeaseManager), absente hors mode cluster
+    private final AtomicLong ownedShards = new AtomicLong(0);
+    private volatile Map<String, Object> cluster;
     
     // Statistiques par région
     private final Map<String, AtomicInteger> regionErrors = new ConcurrentHashMap<>();
     private final Map<String, LocalDateTime> regionLastAccess = new ConcurrentHashMap<>();
+    // Durée (ms) de la dernière exécution de chaque phase de sync par région (fetch, fetchIds, propagate)
+    private final Map<String, Map<String, Long>> regionTimings = new ConcurrentHashMap<>();
     
     // Statistiques d'opérations
     private final AtomicLong totalVentes = new AtomicLong(0);
@@ -28,13 +51,56 @@ public class MonitoringService {
     private final AtomicInteger ventesModifiees = new AtomicInteger(0);
     private final AtomicInteger ventesSupprimees = new AtomicInteger(0);
     
+    // Compactage des tombstones : lignes purgées par région, dernier passage
+    private final Map<String, AtomicLong> tombstonesPurged = new ConcurrentHashMap<>();
+    private volatile LocalDateTime lastPurge;
+    
+    // Lectures globales servies par une seule région ("replica") ou fusionnées ("merged")
+    private final Map<String, AtomicLong> globalReads = new ConcurrentHashMap<>();
+    
+    // Dernier import et dernier export en masse (débit en lignes/s)
+    private final Map<String, BulkResult> lastBulk = new ConcurrentHashMap<>();
+    
     // Historique des synchronisations (dernières 10)
     private final List<SyncRecord> syncHistory = Collections.synchronizedList(new LinkedList<>());
     
-    public MonitoringService() {
-        regionErrors.put("Dakar", new AtomicInteger(0));
-        regionErrors.put("Thies", new AtomicInteger(0));
-        regionErrors.put("Saint-Louis", new AtomicInteger(0));
+    // Histogrammes de latence (Micrometer, exportés sur /actuator/prometheus)
+    //  dms.region.call : appels JDBC directs vers une base régionale (tags region, operation)
+    //  dms.sync.phase  : phases d'un cycle de sync (fetch, merge, propagate)
+    //  dms.sync.region : phase de sync vue depuis une région (tags region, phase)
+    //  dms.replication.lag : délai entre l'écriture d'un événement outbox et sa réplication (tag region source)
+    // Jauges publiées par ReplicationQueue : dms.replication.queue.depth / .age (tag region cible)
+    // et par RegionCircuitBreaker : dms.region.circuit (0 fermé, 1 demi-ouvert, 2 ouvert)
+    // Compteur dms.tombstones.purged (tag region) : tombstones supprimés par TombstonePurger
+    // Compteur dms.bulk.rows (tags direction, region) : lignes importées / exportées en masse
+    // Compteurs dms.sync.skipped / dms.sync.coalesced et jauge dms.sync.interval (SyncCoordinator)
+    // Jauge dms.sync.shards.owned : shards synchronisés par cette instance (mode cluster)
+    // Jauge dms.sync.throttle.rate (tag region) : débit autorisé des propagations (WriteThrottle)
+    // Compteur dms.reads.global (tag mode replica / merged) : lectures de la liste globale
+    // Les appels des repositories et des endpoints sont mesurés par Spring Boot
+    // (spring.data.repository.invocations, http.server.requests)
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    
+    private final CacheManager cacheManager;
+    private final MeterRegistry registry;
+    private final RegionRegistry regions;
+    private final ReplicaSelector replicas;
+    private final WriteThrottle throttle;
+    
+    public MonitoringService(CacheManager cacheManager, MeterRegistry registry, RegionRegistry regions,
+                             ReplicaSelector replicas, WriteThrottle throttle) {
+        this.cacheManager = cacheManager;
+        this.registry = registry;
+        this.regions = regions;
+        this.replicas = replicas;
+        this.throttle = throttle;
+        regions.names().forEach(region -> regionErrors.put(region, new AtomicInteger(0)));
+        Gauge.builder("dms.sync.interval", syncInterval, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("dms.sync.shards.owned", ownedShards, AtomicLong::get)
+                .register(registry);
     }
     
     // 🔹 Enregistrer début de sync
@@ -48,17 +114,47 @@ public class MonitoringService {
     public void endSyncSuccess(long startTime) {
         successfulSyncs.incrementAndGet();
         lastSuccessfulSync = LocalDateTime.now();
-        lastSyncDuration = System.currentTimeMillis() - startTime;
+        long duration = System.currentTimeMillis() - startTime;
+        lastSyncDuration = duration;
         
-        addSyncRecord(true, lastSyncDuration, null);
+        addSyncRecord(true, duration, null);
     }
     
     // 🔹 Enregistrer échec de sync
     public void endSyncFailure(long startTime, String error) {
         failedSyncs.incrementAndGet();
-        lastSyncDuration = System.currentTimeMillis() - startTime;
+        long duration = System.currentTimeMillis() - startTime;
+        lastSyncDuration = duration;
         
-        addSyncRecord(false, lastSyncDuration, error);
+        addSyncRecord(false, duration, error);
+    }
+    
+    // 🔹 Déclenchement planifié sauté : un cycle était déjà en cours
+    public void recordSyncSkipped() {
+        skippedSyncs.incrementAndGet();
+        registry.counter("dms.sync.skipped").increment();
+    }
+    
+    // 🔹 Demande manuelle mise en attente du cycle suivant (regroupée avec les autres)
+    public void recordSyncCoalesced() {
+        coalescedSyncs.incrementAndGet();
+        registry.counter("dms.sync.coalesced").increment();
+    }
+    
+    public void recordSyncInterval(long millis) {
+        syncInterval.set(millis);
+    }
+    
+    // 🔹 Shards attribués à cette instance (région de coordination null : aucune joignable)
+    public void recordShards(String instance, String coordinationRegion, int owned, int total, int members) {
+        ownedShards.set(owned);
+        Map<String, Object> info = new HashMap<>();
+        info.put("instance", instance);
+        info.put("coordinationRegion", coordinationRegion);
+        info.put("ownedShards", owned);
+        info.put("totalShards", total);
+        info.put("members", members);
+        cluster = info;
     }
     
     // 🔹 Enregistrer erreur par région
@@ -71,6 +167,35 @@ public class MonitoringService {
         regionLastAccess.put(region, LocalDateTime.now());
     }
     
+    // 🔹 Enregistrer la durée d'une phase de sync pour une région
+    public void recordRegionTiming(String region, String phase, long durationMillis) {
+        regionTimings.computeIfAbsent(region, r -> new ConcurrentHashMap<>()).put(phase, durationMillis);
+        timer("dms.sync.region", "region", region, "phase", phase).record(durationMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    // 🔹 Enregistrer la durée d'une phase d'un cycle de sync (fetch, merge, propagate)
+    public void recordSyncPhase(String phase, long durationNanos) {
+        timer("dms.sync.phase", "phase", phase).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    // 🔹 Enregistrer le délai de réplication d'un événement outbox
+    public void recordReplicationLag(String region, long lagMillis) {
+        timer("dms.replication.lag", "region", region).record(Math.max(lagMillis, 0), TimeUnit.MILLISECONDS);
+    }
+    
+    // 🔹 Mesurer un appel direct à une base régionale
+    public <T> T timeRegionCall(String region, String operation, Supplier<T> call) {
+        return timer("dms.region.call", "region", region, "operation", operation).record(call);
+    }
+    
+    private Timer timer(String name, String... tags) {
+        return timers.computeIfAbsent(name + Arrays.toString(tags), k -> Timer.builder(name)
+                .tags(tags)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+    
     // 🔹 Enregistrer opérations CRUD
     public void recordVenteCreated() {
         ventesCrees.incrementAndGet();
@@ -84,10 +209,37 @@ public class MonitoringService {
         ventesSupprimees.incrementAndGet();
     }
     
+    // 🔹 Tombstones définitivement supprimés d'une région (compteur dms.tombstones.purged)
+    public void recordTombstonesPurged(String region, long count) {
+        tombstonesPurged.computeIfAbsent(region, r -> new AtomicLong()).addAndGet(count);
+        registry.counter("dms.tombstones.purged", "region", region).increment(count);
+    }
+    
+    public void recordPurgeRun() {
+        lastPurge = LocalDateTime.now();
+    }
+    
+    // 🔹 Lecture globale (liste, page) servie par une seule région ou fusionnée
+    public void recordGlobalRead(String mode) {
+        globalReads.computeIfAbsent(mode, m -> new AtomicLong()).incrementAndGet();
+        registry.counter("dms.reads.global", "mode", mode).increment();
+    }
+    
+    // 🔹 Import / export en masse terminé (compteur dms.bulk.rows)
+    public void recordBulkTransfer(BulkResult result) {
+        lastBulk.put(result.direction(), result);
+        registry.counter("dms.bulk.rows", "direction", result.direction(), "region", result.region())
+                .increment(result.rows());
+    }
+    
     public void setTotalVentes(long count) {
         totalVentes.set(count);
     }
     
+    public void addTotalVentes(long delta) {
+        totalVentes.addAndGet(delta);
+    }
+    
     // 🔹 Ajouter un enregistrement d'historique
     private void addSyncRecord(boolean success, long duration, String error) {
         synchronized (syncHistory) {
@@ -110,14 +262,29 @@ public class MonitoringService {
         stats.put("lastSyncTime", lastSyncTime);
         stats.put("lastSuccessfulSync", lastSuccessfulSync);
         stats.put("lastSyncDuration", lastSyncDuration);
+        stats.put("skippedSyncs", skippedSyncs.get());
+        stats.put("coalescedSyncs", coalescedSyncs.get());
+        stats.put("syncInterval", syncInterval.get());
+        if (cluster != null) {
+            stats.put("cluster", cluster);
+        }
+        stats.put("throttle", throttle.state());
         
-        // Stats par région
-        Map<String, Object> regionStats = new HashMap<>();
-        for (String region : Arrays.asList("Dakar", "Thies", "Saint-Louis")) {
+        // Stats par région (ordre de la configuration)
+        Map<String, Object> regionStats = new LinkedHashMap<>();
+        for (String region : regions.names()) {
             Map<String, Object> regionInfo = new HashMap<>();
             regionInfo.put("errors", regionErrors.getOrDefault(region, new AtomicInteger(0)).get());
             regionInfo.put("lastAccess", regionLastAccess.get(region));
             regionInfo.put("status", getRegionStatus(region));
+            regionInfo.put("timings", new HashMap<>(regionTimings.getOrDefault(region, Map.of())));
+            regionInfo.put("circuit", RegionCircuitBreaker.State.values()[(int) gaugeValue("dms.region.circuit", region)].name());
+            regionInfo.put("queueDepth", gaugeValue("dms.replication.queue.depth", region));
+            regionInfo.put("queueAgeSeconds", gaugeValue("dms.replication.queue.age", region));
+            regionInfo.put("pool", getPoolStatistics(region));
+            regionInfo.put("syncedAsOf", replicas.syncedAsOf(region));
+            regionInfo.put("readLatencyMs", replicas.latencyMillis(region));
+            regionInfo.put("tombstonesPurged", tombstonesPurged.getOrDefault(region, new AtomicLong()).get());
             regionStats.put(region, regionInfo);
         }
         stats.put("regions", regionStats);
@@ -127,13 +294,113 @@ public class MonitoringService {
         stats.put("ventesCrees", ventesCrees.get());
         stats.put("ventesModifiees", ventesModifiees.get());
         stats.put("ventesSupprimees", ventesSupprimees.get());
+        stats.put("tombstonesPurged", tombstonesPurged.values().stream().mapToLong(AtomicLong::get).sum());
+        stats.put("lastPurge", lastPurge);
+        stats.put("bulk", new HashMap<>(lastBulk));
+        Map<String, Long> reads = new HashMap<>();
+        globalReads.forEach((mode, count) -> reads.put(mode, count.get()));
+        stats.put("globalReads", reads);
         
         // Historique
         stats.put("syncHistory", new ArrayList<>(syncHistory));
         
+        // Stats des caches
+        stats.put("caches", getCacheStatistics());
+        
+        // Latences (p50/p95/p99)
+        stats.put("latencies", getLatencyStatistics());
+        
         return stats;
     }
     
+    // 🔹 Valeur d'une jauge par région (file de réplication), 0 si absente
+    private double gaugeValue(String name, String region) {
+        Gauge gauge = registry.find(name).tag("region", region).gauge();
+        return gauge != null ? gauge.value() : 0;
+    }
+    
+    // 🔹 Pool de connexions HikariCP d'une région (le pool porte le nom de la région)
+    //    active / idle / pending / total / max, délais d'obtention dépassés, temps d'acquisition
+    private Map<String, Object> getPoolStatistics(String region) {
+        Map<String, Object> pool = new HashMap<>();
+        for (String metric : List.of("active", "idle", "pending", "max", "min")) {
+            Gauge gauge = registry.find("hikaricp.connections." + metric).tag("pool", region).gauge();
+            pool.put(metric, gauge != null ? gauge.value() : 0);
+        }
+        Gauge total = registry.find("hikaricp.connections").tag("pool", region).gauge();
+        pool.put("total", total != null ? total.value() : 0);
+        Counter timeouts = registry.find("hikaricp.connections.timeout").tag("pool", region).counter();
+        pool.put("timeouts", timeouts != null ? timeouts.count() : 0);
+        Timer acquire = registry.find("hikaricp.connections.acquire").tag("pool", region).timer();
+        if (acquire != null) {
+            pool.put("acquire", summarize(acquire));
+        }
+        return pool;
+    }
+    
+    // 🔹 Taux de succès, évictions et temps de chargement de chaque cache Caffeine
+    private Map<String, Object> getCacheStatistics() {
+        Map<String, Object> caches = new HashMap<>();
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache == null || !(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache)) {
+                continue;
+            }
+            CacheStats cs = nativeCache.stats();
+            Map<String, Object> info = new HashMap<>();
+            info.put("size", nativeCache.estimatedSize());
+            info.put("hits", cs.hitCount());
+            info.put("misses", cs.missCount());
+            info.put("hitRatio", cs.hitRate());
+            info.put("evictions", cs.evictionCount());
+            info.put("loads", cs.loadCount());
+            info.put("averageLoadMillis", cs.averageLoadPenalty() / 1_000_000.0);
+            caches.put(name, info);
+        }
+        return caches;
+    }
+    
+    // 🔹 Percentiles de chaque timer suivi, en millisecondes
+    //    Clés : "sync.phase.fetch", "region.Dakar.upsert", "repository.VenteRepository.findAll SUCCESS", "http.GET / 200"...
+    //    Les repositories de toutes les régions partagent l'interface VenteRepository : leurs timers sont
+    //    confondus, la latence par région est sous "region.<nom>.<opération>"
+    private Map<String, Object> getLatencyStatistics() {
+        Map<String, Object> latencies = new TreeMap<>();
+        for (Timer t : registry.find("dms.sync.phase").timers()) {
+            latencies.put("sync.phase." + t.getId().getTag("phase"), summarize(t));
+        }
+        for (Timer t : registry.find("dms.sync.region").timers()) {
+            latencies.put("sync.region." + t.getId().getTag("region") + "." + t.getId().getTag("phase"), summarize(t));
+        }
+        for (Timer t : registry.find("dms.replication.lag").timers()) {
+            latencies.put("replication.lag." + t.getId().getTag("region"), summarize(t));
+        }
+        for (Timer t : registry.find("dms.region.call").timers()) {
+            latencies.put("region." + t.getId().getTag("region") + "." + t.getId().getTag("operation"), summarize(t));
+        }
+        for (Timer t : registry.find("spring.data.repository.invocations").timers()) {
+            latencies.put("repository." + t.getId().getTag("repository") + "." + t.getId().getTag("method")
+                    + " " + t.getId().getTag("state"), summarize(t));
+        }
+        for (Timer t : registry.find("http.server.requests").timers()) {
+            latencies.put("http." + t.getId().getTag("method") + " " + t.getId().getTag("uri")
+                    + " " + t.getId().getTag("status"), summarize(t));
+        }
+        return latencies;
+    }
+    
+    private Map<String, Object> summarize(Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("count", snapshot.count());
+        info.put("meanMillis", snapshot.mean(TimeUnit.MILLISECONDS));
+        info.put("maxMillis", snapshot.max(TimeUnit.MILLISECONDS));
+        for (ValueAtPercentile p : snapshot.percentileValues()) {
+            info.put("p" + Math.round(p.percentile() * 100), p.value(TimeUnit.MILLISECONDS));
+        }
+        return info;
+    }
+    
     // 🔹 Calculer taux de succès
     private double calculateSuccessRate() {
         int total = totalSyncs.get();
@@ -141,8 +408,12 @@ public class MonitoringService {
         return (successfulSyncs.get() * 100.0) / total;
     }
     
-    // 🔹 Déterminer le statut d'une région
+    // 🔹 Déterminer le statut d'une région (disjoncteur ouvert = OFFLINE, en cours de sonde = WARNING)
     private String getRegionStatus(String region) {
+        double circuit = gaugeValue("dms.region.circuit", region);
+        if (circuit == RegionCircuitBreaker.State.OPEN.ordinal()) return "OFFLINE";
+        if (circuit == RegionCircuitBreaker.State.HALF_OPEN.ordinal()) return "WARNING";
+        
         LocalDateTime lastAccess = regionLastAccess.get(region);
         if (lastAccess == null) return "UNKNOWN";
         
@@ -1,151 +1,958 @@
 package com.example.dms.service;
 
+import com.example.dms.config.RegionRegistry;
 import com.example.dms.model.Vente;
-import com.example.dms.dakar.repository.VenteRepositoryDakar;
-import com.example.dms.thies.repository.VenteRepositoryThies;
-import com.example.dms.stl.repository.VenteRepositoryStl;
+import com.example.dms.model.RegionalResult;
+import com.example.dms.model.VentePage;
+import com.example.dms.model.VenteRollup;
+import com.example.dms.repository.VenteRepository;
 
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Service
 public class MultiVenteService {
 
-    private final VenteRepositoryDakar dakarRepo;
-    private final VenteRepositoryThies thiesRepo;
-    private final VenteRepositoryStl stlRepo;
+    private static final int ID_BATCH_SIZE = 1000;
 
-    public MultiVenteService(VenteRepositoryDakar dakarRepo,
-                             VenteRepositoryThies thiesRepo,
-                             VenteRepositoryStl stlRepo) {
-        this.dakarRepo = dakarRepo;
-        this.thiesRepo = thiesRepo;
-        this.stlRepo = stlRepo;
+    // Ordre de la liste : date_vente décroissante (ventes sans date en dernier) puis id décroissant.
+    // Les UUID sont comparés en non signé, comme PostgreSQL (comparaison octet par octet).
+    private static final Comparator<Vente> LISTING_ORDER = Comparator
+            .comparing(Vente::getDateVente, Comparator.nullsLast(Comparator.<LocalDate>reverseOrder()))
+            .thenComparing(Vente::getId, (a, b) -> compareUuid(b, a));
+
+    // Version HLC d'une ligne, dérivée de updated_at pour les lignes antérieures à la colonne
+    // (même calcul que HybridLogicalClock.fromTimestamp)
+    private static final String ROW_VERSION = "coalesce(%1$s.version, floor(extract(epoch FROM %1$s.updated_at) * 1000)::bigint << 16)";
+
+    // Upsert Last-Write-Wins : la ligne en base n'est remplacée que si elle perd selon l'ordre
+    // total de HybridLogicalClock (version, région d'origine, tombstone) ; une copie identique
+    // ne réécrit rien. COLLATE "C" : même ordre de chaînes qu'en Java.
+    private static final String VENTE_COLUMNS = "id, date_vente, montant, produit, region, updated_at, deleted, deleted_at, version, origin_region";
+    private static final String UPSERT_CONFLICT = """
+            ON CONFLICT (id) DO UPDATE SET
+                date_vente = EXCLUDED.date_vente,
+                montant = EXCLUDED.montant,
+                produit = EXCLUDED.produit,
+                region = EXCLUDED.region,
+                updated_at = EXCLUDED.updated_at,
+                deleted = EXCLUDED.deleted,
+                deleted_at = EXCLUDED.deleted_at,
+                version = EXCLUDED.version,
+                origin_region = EXCLUDED.origin_region
+            WHERE (vente.version IS NULL AND vente.updated_at IS NULL)
+               OR (%s, coalesce(vente.origin_region, '') COLLATE "C", coalesce(vente.deleted, false))
+                < (EXCLUDED.version, coalesce(EXCLUDED.origin_region, '') COLLATE "C", coalesce(EXCLUDED.deleted, false))
+            """.formatted(ROW_VERSION.formatted("vente"));
+    private static final String UPSERT_SQL = "INSERT INTO vente (" + VENTE_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)\n"
+            + UPSERT_CONFLICT;
+
+    // Import en masse : COPY dans une table temporaire (vidée à chaque commit), puis même upsert
+    // Last-Write-Wins vers vente ; RETURNING donne les ventes effectivement écrites
+    private static final String IMPORT_STAGING = "CREATE TEMP TABLE IF NOT EXISTS vente_import "
+            + "(LIKE vente INCLUDING DEFAULTS) ON COMMIT DELETE ROWS";
+    private static final String IMPORT_COPY = "COPY vente_import (" + VENTE_COLUMNS + ") FROM STDIN WITH (FORMAT csv)";
+    private static final String IMPORT_SQL = "INSERT INTO vente (" + VENTE_COLUMNS + ") SELECT " + VENTE_COLUMNS
+            + " FROM vente_import\n" + UPSERT_CONFLICT + " RETURNING id";
+
+    // Empreinte d'une ligne pour l'anti-entropie : (id, version, région d'origine, deleted)
+    private static final String ROW_HASH = "id::text || ':' "
+            + "|| coalesce(" + ROW_VERSION.formatted("vente") + ", 0) || ':' "
+            + "|| coalesce(origin_region, '') || ':' "
+            + "|| coalesce(deleted, false)";
+    // Synchronisation incrémentale : même version que la fusion (les lignes sans version comptent
+    // par leur updated_at), servie par l'index d'expression idx_vente_row_version
+    private static final String CHANGED_SINCE = "SELECT * FROM vente WHERE " + ROW_VERSION.formatted("vente") + " > ?";
+    private static final String MAX_VERSION = "SELECT max(" + ROW_VERSION.formatted("vente") + ") FROM vente";
+    // Nombre max de plages d'UUID par requête lors de la lecture des buckets divergents
+    private static final int RANGES_PER_QUERY = 100;
+
+    private static final RowMapper<Vente> VENTE_ROW_MAPPER = MultiVenteService::mapVente;
+
+    // Outbox transactionnelle : un événement par modification locale, dans la transaction de la vente
+    private static final String OUTBOX_INSERT = "INSERT INTO vente_outbox (vente_id, created_at) VALUES (?, ?)";
+
+    // Topologie : repository, JdbcTemplate et transactions de chaque région
+    private final RegionRegistry regions;
+
+    // Nombre de lignes par lot (et par transaction) lors de la propagation en masse
+    private final int batchSize;
+    // Réplication événementielle (outbox) active : chaque écriture locale émet un événement
+    private final boolean outboxEnabled;
+
+    private final Cache ventesCache;
+    private final Cache venteByIdCache;
+
+    private final VenteRoutingIndex routingIndex;
+    // Versions Last-Write-Wins des écritures locales
+    private final HybridLogicalClock clock;
+    private final MonitoringService monitoring;
+    // Agrégats pré-calculés, mis à jour après chaque écriture validée
+    private final AnalyticsService analytics;
+    // Échec immédiat vers une région hors ligne, sondée en arrière-plan
+    private final RegionCircuitBreaker breaker;
+    // Région servant seule les lectures globales quand elle est assez à jour
+    private final ReplicaSelector replicas;
+    // Débit des écritures de propagation par région, réduit quand la base est chargée
+    private final WriteThrottle throttle;
+    // Lectures parallèles des régions (liste globale, pages, recherche sans route connue)
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public MultiVenteService(RegionRegistry regions,
+                             @Value("${sync.batch-size:500}") int batchSize,
+                             @Value("${sync.outbox.enabled:true}") boolean outboxEnabled,
+                             CacheManager cacheManager,
+                             VenteRoutingIndex routingIndex,
+                             HybridLogicalClock clock,
+                             MonitoringService monitoring,
+                             AnalyticsService analytics,
+                             RegionCircuitBreaker breaker,
+                             ReplicaSelector replicas,
+                             WriteThrottle throttle) {
+        this.regions = regions;
+        this.batchSize = batchSize;
+        this.outboxEnabled = outboxEnabled;
+        this.ventesCache = cacheManager.getCache("ventes");
+        this.venteByIdCache = cacheManager.getCache("venteById");
+        this.routingIndex = routingIndex;
+        this.clock = clock;
+        this.monitoring = monitoring;
+        this.analytics = analytics;
+        this.breaker = breaker;
+        this.replicas = replicas;
+        this.throttle = throttle;
     }
 
-    // 🔹 Ajout d’une vente dans la base correspondant à la région
-    @Transactional("dakarTransactionManager")
-    public Vente saveToDakar(Vente vente) {
-        vente.setRegion("Dakar");
-        return dakarRepo.save(vente);
+    // 🔹 Ajout d’une vente dans la base de la région choisie
+    //    Écritures interactives protégées par le disjoncteur : une région hors ligne échoue tout
+    //    de suite (RegionUnavailableException) au lieu d'attendre le délai de connexion du pool
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "ventes", allEntries = true),
+            @CacheEvict(cacheNames = "venteById", key = "#vente.id")
+    })
+    public Vente save(String region, Vente vente) {
+        Vente saved = breaker.call(region, () -> tx(region).execute(status -> {
+            vente.setRegion(region);
+            vente.stamp(clock.tick(), region);
+            Vente v = repo(region).save(vente);
+            emitChange(region, v.getId());
+            return v;
+        }));
+        // Index de routage mis à jour après le commit : une transaction annulée n'y laisse rien
+        routingIndex.record(saved.getId(), region, saved.getVersion());
+        analytics.apply(saved);
+        return saved;
     }
 
-    @Transactional("thiesTransactionManager")
-    public Vente saveToThies(Vente vente) {
-        vente.setRegion("Thies");
-        return thiesRepo.save(vente);
+    // 🔹 Toutes les ventes d'une région, tombstones compris (utilisé par la synchronisation)
+    public List<Vente> findAllFrom(String region) {
+        return breaker.call(region, () -> repo(region).findAll());
     }
 
-    @Transactional("stlTransactionManager")
-    public Vente saveToStl(Vente vente) {
-        vente.setRegion("Saint-Louis");
-        return stlRepo.save(vente);
+    // 🔹 Ventes de version postérieure au high-water mark d'une région (version HLC)
+    public List<Vente> findChangedSince(String region, long since) {
+        return regionCall(region, "findChangedSince", () -> jdbc(region).query(CHANGED_SINCE, VENTE_ROW_MAPPER, since));
     }
 
-    // 🔹 Récupérer toutes les ventes d'une région
-    public List<Vente> findAllFromDakar() {
-        return dakarRepo.findAll();
+    // Lignes de version postérieure à "since" dans les seuls shards donnés (préfixes d'UUID de shardBits bits)
+    public List<Vente> findChangedSince(String region, long since, Collection<Integer> shards, int shardBits) {
+        List<Object> args = new ArrayList<>(List.of(since));
+        String sql = CHANGED_SINCE + " AND (" + keyPredicate(shards, shardBits, args) + ")";
+        return regionCall(region, "findChangedSince", () -> jdbc(region).query(sql, VENTE_ROW_MAPPER, args.toArray()));
     }
 
-    public List<Vente> findAllFromThies() {
-        return thiesRepo.findAll();
+    // 🔹 Lecture d'un ensemble d'IDs, par lots pour borner la taille du IN (...)
+    public List<Vente> findAllByIds(String region, Collection<UUID> ids) {
+        VenteRepository repo = repo(region);
+        List<UUID> idList = new ArrayList<>(ids);
+        List<Vente> result = new ArrayList<>(idList.size());
+        for (int i = 0; i < idList.size(); i += ID_BATCH_SIZE) {
+            List<UUID> chunk = idList.subList(i, Math.min(i + ID_BATCH_SIZE, idList.size()));
+            result.addAll(breaker.call(region, () -> repo.findAllById(chunk)));
+        }
+        return result;
     }
 
-    public List<Vente> findAllFromStl() {
-        return stlRepo.findAll();
+    // 🔹 Plus grande version de la base (initialisation du high-water mark)
+    public Long findMaxVersion(String region) {
+        return regionCall(region, "findMaxVersion", () -> jdbc(region).queryForObject(MAX_VERSION, Long.class));
     }
 
-    // 🔹 Récupérer toutes les ventes de toutes les régions (seulement les non-supprimées)
-    public List<Vente> findAllFromAllRegions() {
-        List<Vente> all = new ArrayList<>();
-        all.addAll(dakarRepo.findAll().stream().filter(v -> !Boolean.TRUE.equals(v.getDeleted())).toList());
-        all.addAll(thiesRepo.findAll().stream().filter(v -> !Boolean.TRUE.equals(v.getDeleted())).toList());
-        all.addAll(stlRepo.findAll().stream().filter(v -> !Boolean.TRUE.equals(v.getDeleted())).toList());
-        return all;
+    // 🔹 Anti-entropie : l'espace des UUID est découpé en 2^bits buckets selon leurs premiers bits.
+    //    Chaque base calcule elle-même un md5 par bucket ; seule l'empreinte racine (ou la liste
+    //    des empreintes de buckets) transite sur le réseau.
+    public record Digest(String hash, long count) {}
+
+    // Empreinte racine de toute la table (md5 des empreintes de buckets) et nombre de lignes
+    public Digest rootDigest(String region, int bits) {
+        return rootDigest(region, bits, null, 0);
     }
 
-    // 🔹 Rechercher par ID dans toutes les bases
-    public Optional<Vente> findById(UUID id) {
-        Optional<Vente> v = dakarRepo.findById(id);
-        if (v.isPresent()) return v;
-        v = thiesRepo.findById(id);
-        if (v.isPresent()) return v;
-        return stlRepo.findById(id);
+    // Idem, restreinte aux shards donnés (null : toute la table)
+    public Digest rootDigest(String region, int bits, Collection<Integer> shards, int shardBits) {
+        List<Object> args = new ArrayList<>();
+        String sql = "SELECT md5(coalesce(string_agg(digest, '' ORDER BY bucket), '')) AS digest, "
+                + "coalesce(sum(cnt), 0) AS cnt FROM (" + bucketDigestSql(bits, shards, shardBits, args) + ") b";
+        return regionCall(region, "rootDigest", () -> jdbc(region).queryForObject(sql,
+                (rs, rowNum) -> new Digest(rs.getString("digest"), rs.getLong("cnt")), args.toArray()));
     }
 
-    // 🔹 Mise à jour d'une vente dans une région spécifique
-    @Transactional("dakarTransactionManager")
-    public Vente updateInDakar(UUID id, Vente updatedVente) {
-        return dakarRepo.findById(id).map(existing -> {
-            existing.setProduit(updatedVente.getProduit());
-            existing.setMontant(updatedVente.getMontant());
-            existing.setDateVente(updatedVente.getDateVente());
-            // updatedAt sera mis à jour automatiquement par @PreUpdate
-            return dakarRepo.save(existing);
-        }).orElseThrow(() -> new RuntimeException("Vente non trouvée dans Dakar"));
+    // Empreinte de chaque bucket non vide
+    public Map<Integer, String> bucketDigests(String region, int bits) {
+        return bucketDigests(region, bits, null, 0);
     }
 
-    @Transactional("thiesTransactionManager")
-    public Vente updateInThies(UUID id, Vente updatedVente) {
-        return thiesRepo.findById(id).map(existing -> {
-            existing.setProduit(updatedVente.getProduit());
-            existing.setMontant(updatedVente.getMontant());
-            existing.setDateVente(updatedVente.getDateVente());
-            return thiesRepo.save(existing);
-        }).orElseThrow(() -> new RuntimeException("Vente non trouvée dans Thies"));
+    // Idem, restreinte aux shards donnés (null : toute la table)
+    public Map<Integer, String> bucketDigests(String region, int bits, Collection<Integer> shards, int shardBits) {
+        List<Object> args = new ArrayList<>();
+        String sql = bucketDigestSql(bits, shards, shardBits, args);
+        Map<Integer, String> digests = new HashMap<>();
+        return regionCall(region, "bucketDigests", () -> {
+            jdbc(region).query(sql, rs -> { digests.put(rs.getInt("bucket"), rs.getString("digest")); }, args.toArray());
+            return digests;
+        });
+    }
+
+    // Toutes les lignes (tombstones compris) des buckets donnés, lues par plages de clé primaire
+    public List<Vente> findInBuckets(String region, Collection<Integer> buckets, int bits) {
+        List<int[]> ranges = contiguousRanges(buckets);
+        List<Vente> result = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i += RANGES_PER_QUERY) {
+            List<int[]> chunk = ranges.subList(i, Math.min(i + RANGES_PER_QUERY, ranges.size()));
+            List<Object> args = new ArrayList<>();
+            String sql = "SELECT * FROM vente WHERE " + rangePredicate(chunk, bits, args);
+            result.addAll(regionCall(region, "findInBuckets",
+                    () -> jdbc(region).query(sql, VENTE_ROW_MAPPER, args.toArray())));
+        }
+        return result;
+    }
+
+    // Regrouper les buckets consécutifs en plages [début, fin[
+    private static List<int[]> contiguousRanges(Collection<Integer> buckets) {
+        List<int[]> ranges = new ArrayList<>();
+        for (int bucket : new TreeSet<>(buckets)) {
+            int[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+            if (last != null && last[1] == bucket) {
+                last[1] = bucket + 1;
+            } else {
+                ranges.add(new int[]{bucket, bucket + 1});
+            }
+        }
+        return ranges;
+    }
+
+    // Condition SQL "id dans l'une des plages de buckets" ; les bornes sont ajoutées à "args"
+    private static String rangePredicate(List<int[]> ranges, int bits, List<Object> args) {
+        return rangePredicate("id", ranges, bits, args);
+    }
+
+    // Idem sur une autre colonne d'UUID de vente
+    private static String rangePredicate(String column, List<int[]> ranges, int bits, List<Object> args) {
+        if (ranges.isEmpty()) return "false";
+        StringJoiner where = new StringJoiner(" OR ");
+        for (int[] range : ranges) {
+            args.add(bucketStart(range[0], bits));
+            if (range[1] < (1 << bits)) {
+                where.add("(" + column + " >= ? AND " + column + " < ?)");
+                args.add(bucketStart(range[1], bits));
+            } else {
+                where.add("(" + column + " >= ?)");
+            }
+        }
+        return where.toString();
+    }
+
+    // Idem pour un ensemble de buckets (ou de shards) quelconque
+    private static String keyPredicate(Collection<Integer> buckets, int bits, List<Object> args) {
+        return rangePredicate(contiguousRanges(buckets), bits, args);
+    }
+
+    private static String bucketDigestSql(int bits, Collection<Integer> shards, int shardBits, List<Object> args) {
+        String bucket = "((get_byte(uuid_send(id), 0) * 256 + get_byte(uuid_send(id), 1)) >> " + (16 - bits) + ")";
+        String where = shards == null ? "" : " WHERE " + keyPredicate(shards, shardBits, args);
+        return "SELECT " + bucket + " AS bucket, md5(string_agg(" + ROW_HASH + ", ',' ORDER BY id)) AS digest, "
+                + "count(*) AS cnt FROM vente" + where + " GROUP BY 1";
+    }
+
+    // Premier UUID d'un bucket (PostgreSQL compare les UUID octet par octet, sans signe)
+    private static UUID bucketStart(int bucket, int bits) {
+        return new UUID(((long) bucket) << (64 - bits), 0L);
+    }
+
+    private static Vente mapVente(ResultSet rs, int rowNum) throws SQLException {
+        Vente v = new Vente();
+        v.setId(rs.getObject("id", UUID.class));
+        v.setDateVente(rs.getObject("date_vente", LocalDate.class));
+        v.setMontant((Double) rs.getObject("montant"));
+        v.setProduit(rs.getString("produit"));
+        v.setRegion(rs.getString("region"));
+        v.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
+        v.setDeleted((Boolean) rs.getObject("deleted"));
+        v.setDeletedAt(rs.getObject("deleted_at", LocalDateTime.class));
+        v.setVersion((Long) rs.getObject("version"));
+        v.setOriginRegion(rs.getString("origin_region"));
+        return v;
+    }
+
+    // 🔹 Agrégation répartie (scatter-gather) : le GROUP BY s'exécute dans les bases régionales,
+    //    seuls les agrégats partiels reviennent. Chaque vente étant répliquée partout, l'espace des
+    //    UUID est partagé en autant de parts que de régions : la région i n'agrège que sa part, ce
+    //    qui évite de compter une vente plusieurs fois. Une part n'est agrégée que par une région à
+    //    jour (ReplicaSelector.isFresh) : la sienne ou, à défaut, la suivante. Si aucune ne l'est, la
+    //    part est lue dans toutes les régions joignables et fusionnée (version la plus récente de
+    //    chaque vente) avant d'être agrégée ici. asOf du résultat : plus ancien synced_at des
+    //    régions ayant agrégé une part, au pire max-staleness-ms avant la requête.
+    //    dimension : "produit" ou "jour" ; from / to : bornes facultatives de date_vente
+    public RegionalResult<List<VenteRollup>> aggregate(String dimension, LocalDate from, LocalDate to) {
+        String column = switch (dimension) {
+            case "produit" -> "produit";
+            case "jour" -> "date_vente";
+            default -> throw new IllegalArgumentException("Dimension inconnue : " + dimension);
+        };
+        List<String> names = regions.names();
+        int shares = names.size();
+        LocalDateTime started = LocalDateTime.now();
+        List<Future<Share>> futures = new ArrayList<>(shares);
+        for (int share = 0; share < shares; share++) {
+            int s = share;
+            futures.add(executor.submit(() -> aggregateShare(names, s, column, from, to, started)));
+        }
+
+        Map<Object, VenteRollup> combined = new LinkedHashMap<>();
+        Set<String> unavailable = new LinkedHashSet<>();
+        LocalDateTime asOf = started;
+        for (int share = 0; share < shares; share++) {
+            try {
+                Share part = futures.get(share).get();
+                for (VenteRollup partial : part.rollups()) {
+                    Object group = column.equals("produit") ? partial.produit() : partial.day();
+                    combined.merge(group, partial, MultiVenteService::combine);
+                }
+                unavailable.addAll(part.unavailable());
+                if (part.asOf().isBefore(asOf)) asOf = part.asOf();
+            } catch (ExecutionException e) {
+                System.err.println("⚠️ Agrégation sans la part de " + names.get(share) + " : " + e.getCause().getMessage());
+                unavailable.add(names.get(share));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Agrégation interrompue", e);
+            }
+        }
+        List<VenteRollup> result = new ArrayList<>(combined.values());
+        result.sort(column.equals("produit")
+                ? Comparator.comparing(VenteRollup::sum).reversed()
+                : Comparator.comparing(VenteRollup::day, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return new RegionalResult<>(result, new ArrayList<>(unavailable), asOf);
+    }
+
+    // Agrégats d'une part ; asOf : toutes les écritures antérieures y sont comptées
+    private record Share(List<VenteRollup> rollups, LocalDateTime asOf, List<String> unavailable) {}
+
+    // Part "share" de l'espace des UUID, agrégée par sa région ou, à défaut, par la suivante à jour ;
+    // sans région à jour, fusion des copies de toutes les régions joignables
+    private Share aggregateShare(List<String> names, int share, String column,
+                                 LocalDate from, LocalDate to, LocalDateTime started) {
+        int shares = names.size();
+        List<Object> range = new ArrayList<>();
+        StringBuilder where = new StringBuilder("id >= ?");
+        range.add(bucketStart(share * (1 << 16) / shares, 16));
+        if (share + 1 < shares) {
+            where.append(" AND id < ?");
+            range.add(bucketStart((share + 1) * (1 << 16) / shares, 16));
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT ").append(column).append(" AS grp, count(*) AS cnt, "
+                + "coalesce(sum(montant), 0) AS total, min(montant) AS mini, max(montant) AS maxi "
+                + "FROM vente WHERE deleted = false AND ").append(where);
+        List<Object> args = new ArrayList<>(range);
+        if (from != null) {
+            sql.append(" AND date_vente >= ?");
+            args.add(from);
+        }
+        if (to != null) {
+            sql.append(" AND date_vente <= ?");
+            args.add(to);
+        }
+        sql.append(" GROUP BY ").append(column);
+
+        for (int k = 0; k < shares; k++) {
+            String region = names.get((share + k) % shares);
+            LocalDateTime syncedAsOf = replicas.syncedAsOf(region);
+            if (!replicas.isFresh(region)) continue;
+            try {
+                return new Share(regionCall(region, "aggregate", () -> jdbc(region).query(sql.toString(), (rs, i) -> {
+                    boolean byProduit = column.equals("produit");
+                    return new VenteRollup(null,
+                            byProduit ? rs.getString("grp") : null,
+                            byProduit ? null : rs.getObject("grp", LocalDate.class),
+                            rs.getLong("cnt"), rs.getDouble("total"),
+                            (Double) rs.getObject("mini"), (Double) rs.getObject("maxi"));
+                }, args.toArray())), syncedAsOf, List.of());
+            } catch (RuntimeException e) {
+                System.err.println("⚠️ Part " + share + " non agrégée par " + region + " : " + e.getMessage());
+            }
+        }
+
+        // Tombstones compris : une suppression plus récente l'emporte sur une copie périmée
+        List<String> unavailable = new ArrayList<>();
+        String rows = "SELECT * FROM vente WHERE " + where;
+        List<List<Vente>> copies = readAll("Agrégation de la part " + share,
+                region -> jdbc(region).query(rows, VENTE_ROW_MAPPER, range.toArray()), unavailable);
+        return new Share(rollupLatest(copies, column.equals("produit"), from, to), started, unavailable);
+    }
+
+    // 🔹 Agrégats des versions les plus récentes de copies lues dans plusieurs régions
+    //    (ventes supprimées écartées, période appliquée à la version retenue)
+    static List<VenteRollup> rollupLatest(List<List<Vente>> copies, boolean byProduit, LocalDate from, LocalDate to) {
+        Map<UUID, Vente> latest = new HashMap<>();
+        for (List<Vente> region : copies) {
+            for (Vente v : region) {
+                latest.merge(v.getId(), v, (a, b) -> isNewer(b, a) ? b : a);
+            }
+        }
+        Map<Object, VenteRollup> groups = new HashMap<>();
+        for (Vente v : latest.values()) {
+            LocalDate day = v.getDateVente();
+            if (Boolean.TRUE.equals(v.getDeleted())) continue;
+            if (from != null && (day == null || day.isBefore(from))) continue;
+            if (to != null && (day == null || day.isAfter(to))) continue;
+            Double montant = v.getMontant();
+            VenteRollup one = new VenteRollup(null, byProduit ? v.getProduit() : null, byProduit ? null : day,
+                    1, montant != null ? montant : 0, montant, montant);
+            groups.merge(byProduit ? v.getProduit() : day, one, MultiVenteService::combine);
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    // Fusion de deux agrégats partiels d'un même groupe (parts disjointes)
+    private static VenteRollup combine(VenteRollup a, VenteRollup b) {
+        return new VenteRollup(a.region(), a.produit(), a.day(), a.count() + b.count(), a.sum() + b.sum(),
+                a.min() == null ? b.min() : b.min() == null ? a.min() : Math.min(a.min(), b.min()),
+                a.max() == null ? b.max() : b.max() == null ? a.max() : Math.max(a.max(), b.max()));
+    }
+
+    // 🔹 Propagation en masse vers une région : lots d'INSERT ... ON CONFLICT, une transaction par lot
+    //    Retourne le nombre de lignes effectivement insérées ou mises à jour
+    //    Les entrées de cache des ventes écrites sont invalidées au commit de chaque lot
+    //    Une version qui n'est pas plus récente qu'un tombstone purgé (vente_purged) est écartée
+    //    Chaque lot attend son budget d'écriture (WriteThrottle) : le trafic des points de vente passe d'abord
+    public int upsertAll(String region, List<Vente> ventes) {
+        JdbcTemplate jdbc = jdbc(region);
+        TransactionTemplate tx = tx(region);
+        int written = 0;
+        for (int i = 0; i < ventes.size(); i += batchSize) {
+            List<Vente> chunk = ventes.subList(i, Math.min(i + batchSize, ventes.size()));
+            throttle.acquire(region, chunk.size());
+            long start = System.nanoTime();
+            int[][] counts = regionCall(region, "upsert", () -> tx.execute(status -> {
+                chunk.forEach(v -> venteByIdCache.evict(v.getId()));
+                ventesCache.clear();
+                List<Vente> live = withoutPurged(jdbc, chunk);
+                return jdbc.batchUpdate(UPSERT_SQL, live, Math.max(live.size(), 1), (ps, v) -> {
+                    ps.setObject(1, v.getId());
+                    ps.setObject(2, v.getDateVente(), Types.DATE);
+                    ps.setObject(3, v.getMontant(), Types.DOUBLE);
+                    ps.setString(4, v.getProduit());
+                    ps.setString(5, region);
+                    ps.setObject(6, v.getUpdatedAt(), Types.TIMESTAMP);
+                    ps.setObject(7, v.getDeleted(), Types.BOOLEAN);
+                    ps.setObject(8, v.getDeletedAt(), Types.TIMESTAMP);
+                    ps.setLong(9, HybridLogicalClock.versionOf(v));
+                    ps.setString(10, v.getOriginRegion());
+                });
+            }));
+            throttle.record(region, System.nanoTime() - start);
+            for (int[] batch : counts) {
+                for (int c : batch) {
+                    written += c == Statement.SUCCESS_NO_INFO ? 1 : Math.max(c, 0);
+                }
+            }
+        }
+        return written;
+    }
+
+    private static List<Vente> withoutPurged(JdbcTemplate jdbc, List<Vente> chunk) {
+        Map<UUID, Long> purged = new HashMap<>();
+        jdbc.query("SELECT id, version FROM vente_purged WHERE id = ANY (?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", chunk.stream().map(Vente::getId).toArray())),
+                rs -> { purged.put(rs.getObject("id", UUID.class), rs.getLong("version")); });
+        if (purged.isEmpty()) return chunk;
+        return chunk.stream()
+                .filter(v -> !purged.containsKey(v.getId()) || HybridLogicalClock.versionOf(v) > purged.get(v.getId()))
+                .toList();
+    }
+
+    // 🔹 Compactage des tombstones : tombstones supprimés depuis plus longtemps que "before",
+    //    dans l'ordre (deleted_at, id), après le tombstone "after" (null : depuis le début),
+    //    restreints aux shards donnés (null : toute la table)
+    public List<Vente> findExpiredTombstones(String region, LocalDateTime before, Vente after, int limit,
+                                             Collection<Integer> shards, int shardBits) {
+        List<Object> args = new ArrayList<>(List.of(before));
+        StringBuilder sql = new StringBuilder("SELECT * FROM vente WHERE deleted = true AND deleted_at < ?");
+        if (after != null) {
+            sql.append(" AND (deleted_at, id) > (?, ?)");
+            args.add(after.getDeletedAt());
+            args.add(after.getId());
+        }
+        if (shards != null) {
+            sql.append(" AND (").append(keyPredicate(shards, shardBits, args)).append(")");
+        }
+        sql.append(" ORDER BY deleted_at, id LIMIT ?");
+        args.add(limit);
+        return regionCall(region, "tombstones",
+                () -> jdbc(region).query(sql.toString(), VENTE_ROW_MAPPER, args.toArray()));
+    }
+
+    // IDs déjà purgés dans une région, parmi ceux donnés
+    public Set<UUID> findPurgedIds(String region, Collection<UUID> ids) {
+        Set<UUID> purged = new HashSet<>();
+        regionCall(region, "purgedIds", () -> {
+            jdbc(region).query("SELECT id FROM vente_purged WHERE id = ANY (?)",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids.toArray())),
+                    rs -> { purged.add(rs.getObject("id", UUID.class)); });
+            return purged;
+        });
+        return purged;
     }
 
-    @Transactional("stlTransactionManager")
-    public Vente updateInStl(UUID id, Vente updatedVente) {
-        return stlRepo.findById(id).map(existing -> {
+    // 🔹 Supprimer définitivement des tombstones confirmés partout, en une transaction :
+    //    la version de chaque tombstone est gardée dans vente_purged, puis la ligne est supprimée
+    //    si elle est toujours ce même tombstone. Retourne le nombre de lignes supprimées.
+    public int purgeTombstones(String region, List<Vente> tombstones) {
+        JdbcTemplate jdbc = jdbc(region);
+        LocalDateTime now = LocalDateTime.now();
+        int[][] counts = regionCall(region, "purge", () -> tx(region).execute(status -> {
+            jdbc.batchUpdate("INSERT INTO vente_purged (id, version, purged_at) VALUES (?, ?, ?) "
+                            + "ON CONFLICT (id) DO UPDATE SET version = GREATEST(vente_purged.version, EXCLUDED.version)",
+                    tombstones, tombstones.size(), (ps, v) -> {
+                        ps.setObject(1, v.getId());
+                        ps.setLong(2, HybridLogicalClock.versionOf(v));
+                        ps.setObject(3, now, Types.TIMESTAMP);
+                    });
+            return jdbc.batchUpdate("DELETE FROM vente WHERE id = ? AND deleted = true AND "
+                            + ROW_VERSION.formatted("vente") + " = ?",
+                    tombstones, tombstones.size(), (ps, v) -> {
+                        ps.setObject(1, v.getId());
+                        ps.setLong(2, HybridLogicalClock.versionOf(v));
+                    });
+        }));
+        tombstones.forEach(v -> venteByIdCache.evict(v.getId()));
+        int deleted = 0;
+        for (int[] batch : counts) {
+            for (int c : batch) {
+                deleted += c == Statement.SUCCESS_NO_INFO ? 1 : Math.max(c, 0);
+            }
+        }
+        return deleted;
+    }
+
+    // Oublier les marqueurs de purge plus anciens que "before"
+    public int expirePurgedMarkers(String region, LocalDateTime before) {
+        return regionCall(region, "purgeExpire",
+                () -> jdbc(region).update("DELETE FROM vente_purged WHERE purged_at < ?", before));
+    }
+
+    // 🔹 Import en masse d'un lot dans une région, en une transaction : COPY vers la table
+    //    temporaire puis upsert vers vente. Chaque vente reçoit une nouvelle version locale, comme
+    //    une saisie ; un ID présent deux fois dans le lot ne garde que la dernière ligne.
+    //    Retourne le nombre de ventes écrites.
+    public int importBatch(String region, List<Vente> ventes) {
+        JdbcTemplate jdbc = jdbc(region);
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        Map<UUID, Vente> byId = new LinkedHashMap<>();
+        for (Vente v : ventes) {
+            v.setRegion(region);
+            v.setUpdatedAt(now);
+            v.setDeleted(false);
+            v.setDeletedAt(null);
+            v.stamp(clock.tick(), region);
+            byId.put(v.getId(), v);
+        }
+        String rows = toCopyCsv(byId.values());
+        List<UUID> written = regionCall(region, "import", () -> tx(region).execute(status -> {
+            jdbc.execute(IMPORT_STAGING);
+            jdbc.execute((ConnectionCallback<Long>) con -> {
+                try {
+                    return con.unwrap(PGConnection.class).getCopyAPI().copyIn(IMPORT_COPY, new StringReader(rows));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            List<UUID> ids = jdbc.queryForList(IMPORT_SQL, UUID.class);
+            if (outboxEnabled && !ids.isEmpty()) {
+                jdbc.batchUpdate(OUTBOX_INSERT, ids, ids.size(), (ps, id) -> {
+                    ps.setObject(1, id);
+                    ps.setObject(2, now, Types.TIMESTAMP);
+                });
+            }
+            return ids;
+        }));
+        ventesCache.clear();
+        for (UUID id : written) {
+            Vente v = byId.get(id);
+            venteByIdCache.evict(id);
+            routingIndex.record(id, region, v.getVersion());
+            analytics.apply(v);
+        }
+        return written.size();
+    }
+
+    // Lignes au format CSV de COPY (champ vide non quoté = NULL)
+    private static String toCopyCsv(Collection<Vente> ventes) {
+        StringBuilder out = new StringBuilder(ventes.size() * 128);
+        for (Vente v : ventes) {
+            out.append(v.getId()).append(',')
+                    .append(v.getDateVente() != null ? v.getDateVente() : "").append(',')
+                    .append(v.getMontant() != null ? v.getMontant() : "").append(',')
+                    .append(quoteCsv(v.getProduit())).append(',')
+                    .append(quoteCsv(v.getRegion())).append(',')
+                    .append(v.getUpdatedAt()).append(',')
+                    .append(v.getDeleted()).append(',')
+                    .append(',')
+                    .append(v.getVersion()).append(',')
+                    .append(quoteCsv(v.getOriginRegion())).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String quoteCsv(String value) {
+        return value == null ? "" : '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    // 🔹 Export : ventes actives d'une région sur [from, to] (bornes facultatives), lues par un
+    //    curseur (fetchSize lignes par aller-retour) et passées une à une à "sink", sans être
+    //    gardées en mémoire. Retourne le nombre de ventes lues.
+    public long streamActive(String region, LocalDate from, LocalDate to, int fetchSize, Consumer<Vente> sink) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM vente WHERE deleted = false");
+        List<LocalDate> args = new ArrayList<>(2);
+        if (from != null) {
+            sql.append(" AND date_vente >= ?");
+            args.add(from);
+        }
+        if (to != null) {
+            sql.append(" AND date_vente <= ?");
+            args.add(to);
+        }
+        sql.append(" ORDER BY date_vente, id");
+        long[] count = {0};
+        // Le curseur PostgreSQL (fetchSize) n'est utilisé qu'à l'intérieur d'une transaction
+        regionCall(region, "export", () -> tx(region).execute(status -> {
+            jdbc(region).query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql.toString());
+                ps.setFetchSize(fetchSize);
+                for (int i = 0; i < args.size(); i++) {
+                    ps.setObject(i + 1, args.get(i), Types.DATE);
+                }
+                return ps;
+            }, (RowCallbackHandler) rs -> {
+                sink.accept(mapVente(rs, 0));
+                count[0]++;
+            });
+            return count[0];
+        }));
+        return count[0];
+    }
+
+    // 🔹 Une page de la liste globale, après le curseur "after" (null : première page).
+    //    Mode "replica" : la page d'une seule région à jour. Sinon chaque région renvoie au plus
+    //    "size" lignes après le curseur, puis les pages sont fusionnées (mergePages). Le curseur
+    //    (date_vente, id) vaut pour toutes les régions. Pages gardées dans le cache "ventes" (vidé à
+    //    chaque écriture), sauf une page partielle (région hors ligne).
+    public VentePage findPage(VentePage.Cursor after, int size) {
+        SimpleKey key = new SimpleKey(after, size);
+        VentePage page = ventesCache.get(key, () -> readPage(after, size));
+        if (page.partial()) ventesCache.evict(key);
+        return page;
+    }
+
+    private VentePage readPage(VentePage.Cursor after, int size) {
+        Function<String, List<Vente>> read = region -> regionPage(repo(region), after, size);
+        List<String> unavailable = new ArrayList<>();
+        List<Vente> page = readReplica("Page", read);
+        if (page == null) {
+            page = mergePages(readAll("Page", read, unavailable), size);
+        }
+
+        String nextCursor = null;
+        if (page.size() == size) {
+            nextCursor = VentePage.Cursor.of(page.get(page.size() - 1)).toString();
+        }
+        return new VentePage(page, nextCursor, unavailable);
+    }
+
+    // Page d'une région dans l'ordre date_vente DESC NULLS LAST, id DESC : après la dernière vente
+    // datée viennent les ventes sans date. Chaque requête garde une plage d'index (idx_vente_listing).
+    private static List<Vente> regionPage(VenteRepository repo, VentePage.Cursor after, int size) {
+        if (after == null) return repo.findFirstPage(size);
+        if (after.date() == null) return repo.findUndatedPageAfter(after.id(), size);
+        List<Vente> page = repo.findPageAfter(after.date(), after.id(), size);
+        if (page.size() < size) {
+            page = new ArrayList<>(page);
+            page.addAll(repo.findUndatedPage(size - page.size()));
+        }
+        return page;
+    }
+
+    // 🔹 Lecture globale servie par une seule région (mode "replica") ; null si aucune région
+    //    n'est assez à jour ou si sa lecture échoue : l'appelant fusionne alors toutes les régions
+    private <T> T readReplica(String operation, Function<String, T> read) {
+        Optional<String> replica = replicas.choose();
+        if (replica.isEmpty()) {
+            monitoring.recordGlobalRead("merged");
+            return null;
+        }
+        try {
+            T result = timedRead(replica.get(), read);
+            monitoring.recordGlobalRead("replica");
+            return result;
+        } catch (RuntimeException e) {
+            System.err.println("⚠️ " + operation + " : lecture depuis " + replica.get() + " impossible, lecture fusionnée : "
+                    + e.getMessage());
+            monitoring.recordGlobalRead("merged");
+            return null;
+        }
+    }
+
+    // 🔹 Fusion de pages régionales : une vente répliquée n'apparaît qu'une fois, dans sa version
+    //    la plus récente, à la place que lui donne cette version (sa date a pu changer : les copies
+    //    d'une même vente ne sont pas forcément voisines). Une copie périmée placée au-delà de la
+    //    page peut encore apparaître dans une page suivante, jusqu'à la prochaine synchronisation.
+    static List<Vente> mergePages(List<List<Vente>> pages, int size) {
+        Map<UUID, Vente> latest = new HashMap<>();
+        for (List<Vente> page : pages) {
+            for (Vente v : page) {
+                latest.merge(v.getId(), v, (current, candidate) -> isNewer(candidate, current) ? candidate : current);
+            }
+        }
+        List<Vente> merged = new ArrayList<>(latest.values());
+        merged.sort(LISTING_ORDER);
+        return merged.size() > size ? new ArrayList<>(merged.subList(0, size)) : merged;
+    }
+
+    private static boolean isNewer(Vente a, Vente b) {
+        return HybridLogicalClock.isNewer(a, b);
+    }
+
+    private static int compareUuid(UUID a, UUID b) {
+        int cmp = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return cmp != 0 ? cmp : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+
+    // 🔹 Rechercher par ID : directement dans la région indiquée par l'index de routage,
+    //    sinon dans les bases joignables en parallèle (version la plus récente).
+    //    Un résultat partiel (région hors ligne) n'est pas gardé en cache.
+    public RegionalResult<Optional<Vente>> findById(UUID id) {
+        RegionalResult<Optional<Vente>> result = venteByIdCache.get(id, () -> locate(id));
+        if (result.partial()) venteByIdCache.evict(id);
+        return result;
+    }
+
+    private RegionalResult<Optional<Vente>> locate(UUID id) {
+        Optional<VenteRoutingIndex.Route> route = routingIndex.lookup(id);
+        if (route.isPresent() && breaker.isAvailable(route.get().region())) {
+            String region = route.get().region();
+            try {
+                Optional<Vente> v = breaker.call(region, () -> repo(region).findById(id));
+                if (v.isPresent() && HybridLogicalClock.versionOf(v.get()) >= route.get().version()) {
+                    return new RegionalResult<>(v, List.of());
+                }
+            } catch (RuntimeException e) {
+                // La région routée ne répond pas : recherche dans les autres
+                System.err.println("❌ Recherche " + id + " dans " + region + " : " + e.getMessage());
+            }
+        }
+        RegionalResult<Optional<Vente>> latest = findLatestInAllRegions(id);
+        latest.value().ifPresent(v -> routingIndex.record(id, v.getRegion(), HybridLogicalClock.versionOf(v)));
+        return latest;
+    }
+
+    private RegionalResult<Optional<Vente>> findLatestInAllRegions(UUID id) {
+        List<String> unavailable = new ArrayList<>();
+        Vente latest = null;
+        for (Optional<Vente> v : readAll("Recherche " + id, region -> repo(region).findById(id), unavailable)) {
+            if (v.isPresent() && (latest == null || isNewer(v.get(), latest))) latest = v.get();
+        }
+        return new RegionalResult<>(Optional.ofNullable(latest), unavailable);
+    }
+
+    // 🔹 Mise à jour d'une vente dans une région spécifique
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "ventes", allEntries = true),
+            @CacheEvict(cacheNames = "venteById", key = "#id")
+    })
+    public Vente update(String region, UUID id, Vente updatedVente) {
+        Vente saved = breaker.call(region, () -> tx(region).execute(status -> repo(region).findById(id).map(existing -> {
             existing.setProduit(updatedVente.getProduit());
             existing.setMontant(updatedVente.getMontant());
             existing.setDateVente(updatedVente.getDateVente());
-            return stlRepo.save(existing);
-        }).orElseThrow(() -> new RuntimeException("Vente non trouvée dans Saint-Louis"));
+            existing.stamp(clock.tick(existing), region);
+            existing.touch();
+            emitChange(region, id);
+            return repo(region).save(existing);
+        }).orElseThrow(() -> new RuntimeException("Vente non trouvée dans " + region))));
+        routingIndex.record(id, region, saved.getVersion());
+        analytics.apply(saved);
+        return saved;
     }
 
-    // 🔹 Supprimer d'une région spécifique (soft delete avec tombstone)
-    @Transactional("dakarTransactionManager")
-    public void deleteFromDakar(UUID id) {
-        dakarRepo.findById(id).ifPresent(vente -> {
-            vente.markAsDeleted();
-            dakarRepo.save(vente);
+    // 🔹 Supprimer d'une région spécifique (soft delete avec tombstone) ; un tombstone est laissé tel quel
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "ventes", allEntries = true),
+            @CacheEvict(cacheNames = "venteById", key = "#id")
+    })
+    public void delete(String region, UUID id) {
+        Optional<Vente> deleted = breaker.call(region, () -> tx(region).execute(status -> repo(region).findById(id)
+                .filter(vente -> !Boolean.TRUE.equals(vente.getDeleted()))
+                .map(vente -> {
+                    vente.stamp(clock.tick(vente), region);
+                    vente.markAsDeleted();
+                    repo(region).save(vente);
+                    emitChange(region, id);
+                    return vente;
+                })));
+        deleted.ifPresent(vente -> {
+            routingIndex.record(id, region, vente.getVersion());
+            analytics.apply(vente);
         });
     }
 
-    @Transactional("thiesTransactionManager")
-    public void deleteFromThies(UUID id) {
-        thiesRepo.findById(id).ifPresent(vente -> {
-            vente.markAsDeleted();
-            thiesRepo.save(vente);
+    // 🔹 Supprimer une vente (soft delete) dans la région qui détient sa dernière version ;
+    //    le tombstone est ensuite propagé aux autres bases (outbox, sinon synchronisation).
+    //    Une vente déjà supprimée n'est ni datée à nouveau ni repropagée.
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "ventes", allEntries = true),
+            @CacheEvict(cacheNames = "venteById", key = "#id")
+    })
+    public void deleteById(UUID id) {
+        locate(id).value().filter(v -> !Boolean.TRUE.equals(v.getDeleted())).ifPresent(v -> {
+            breaker.call(v.getRegion(), () -> tx(v.getRegion()).execute(status -> {
+                v.stamp(clock.tick(v), v.getRegion());
+                v.markAsDeleted();
+                repo(v.getRegion()).save(v);
+                emitChange(v.getRegion(), id);
+                return v;
+            }));
+            routingIndex.record(id, v.getRegion(), v.getVersion());
+            analytics.apply(v);
         });
     }
 
-    @Transactional("stlTransactionManager")
-    public void deleteFromStl(UUID id) {
-        stlRepo.findById(id).ifPresent(vente -> {
-            vente.markAsDeleted();
-            stlRepo.save(vente);
-        });
+    // 🔹 Outbox : événement écrit dans la transaction en cours (JdbcTemplate participe à la
+    //    transaction JPA de la région), donc validé ou annulé avec la vente elle-même
+    private void emitChange(String region, UUID venteId) {
+        if (outboxEnabled) {
+            jdbc(region).update(OUTBOX_INSERT, venteId, LocalDateTime.now());
+        }
     }
 
-    // 🔹 Supprimer dans toutes les bases (soft delete)
-    @Transactional
-    public void deleteById(UUID id) {
-        dakarRepo.findById(id).ifPresent(v -> {
-            v.markAsDeleted();
-            dakarRepo.save(v);
-        });
-        thiesRepo.findById(id).ifPresent(v -> {
-            v.markAsDeleted();
-            thiesRepo.save(v);
-        });
-        stlRepo.findById(id).ifPresent(v -> {
-            v.markAsDeleted();
-            stlRepo.save(v);
-        });
+    public record OutboxEvent(long id, UUID venteId, LocalDateTime createdAt) {}
+
+    // 🔹 Plus anciens événements en attente dans l'outbox d'une région, pour les ventes des shards
+    //    donnés (null : toutes)
+    public List<OutboxEvent> pollOutbox(String region, int limit, Collection<Integer> shards, int shardBits) {
+        List<Object> args = new ArrayList<>();
+        String where = shards == null ? "" : " WHERE " + rangePredicate("vente_id", contiguousRanges(shards), shardBits, args);
+        args.add(limit);
+        return regionCall(region, "outboxPoll", () -> jdbc(region).query(
+                "SELECT id, vente_id, created_at FROM vente_outbox" + where + " ORDER BY id LIMIT ?",
+                (rs, i) -> new OutboxEvent(rs.getLong("id"), rs.getObject("vente_id", UUID.class),
+                        rs.getObject("created_at", LocalDateTime.class)),
+                args.toArray()));
+    }
+
+    // 🔹 Supprimer les événements traités (par ID : une transaction plus ancienne peut valider
+    //    un ID inférieur après coup, une purge "id <= max" le perdrait)
+    public void ackOutbox(String region, List<OutboxEvent> events) {
+        regionCall(region, "outboxAck", () -> jdbc(region).batchUpdate("DELETE FROM vente_outbox WHERE id = ?",
+                events, events.size(), (ps, e) -> ps.setLong(1, e.id())));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // 🔹 Appel JDBC direct vers une région : mesuré, et protégé par le disjoncteur de la région
+    private <T> T regionCall(String region, String operation, Supplier<T> call) {
+        return breaker.call(region, () -> monitoring.timeRegionCall(region, operation, call));
+    }
+
+    // 🔹 Même lecture sur toutes les régions joignables, en parallèle (threads virtuels).
+    //    Les régions hors ligne ou en échec sont ajoutées à "unavailable" ; l'ordre des
+    //    résultats suit celui de la configuration.
+    private <T> List<T> readAll(String operation, Function<String, T> read, List<String> unavailable) {
+        Map<String, Future<T>> futures = new LinkedHashMap<>();
+        for (String region : regions.names()) {
+            if (breaker.isAvailable(region)) {
+                futures.put(region, executor.submit(() -> timedRead(region, read)));
+            } else {
+                unavailable.add(region);
+            }
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        for (Map.Entry<String, Future<T>> entry : futures.entrySet()) {
+            try {
+                results.add(entry.getValue().get());
+            } catch (ExecutionException e) {
+                System.err.println("⚠️ " + operation + " sans " + entry.getKey() + " : " + e.getCause().getMessage());
+                unavailable.add(entry.getKey());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Lecture interrompue : " + operation, e);
+            }
+        }
+        return results;
+    }
+
+    // Lecture protégée par le disjoncteur ; sa durée alimente le choix de la région la plus rapide
+    private <T> T timedRead(String region, Function<String, T> read) {
+        long start = System.nanoTime();
+        T result = breaker.call(region, () -> read.apply(region));
+        replicas.recordLatency(region, System.nanoTime() - start);
+        return result;
+    }
+
+    private VenteRepository repo(String region) {
+        return regions.get(region).repository();
+    }
+
+    private JdbcTemplate jdbc(String region) {
+        return regions.get(region).jdbc();
+    }
+
+    private TransactionTemplate tx(String region) {
+        return regions.get(region).tx();
     }
 }
@@ -0,0 +1,121 @@
+package com.example.dms.service;
+
+import com.example.dms.config.RegionRegistry;
+import com.example.dms.model.Vente;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Réplication événementielle : lit l'outbox de chaque région (vente_outbox) et recopie
+ * la version courante des ventes modifiées vers les autres régions, en quelques centaines
+ * de millisecondes au lieu d'attendre le cycle de SyncService.
+ *
+ * Les événements d'une même vente sont fusionnés : seule sa dernière version est relue.
+ * L'upsert Last-Write-Wins rend l'application idempotente. Une région cible en échec
+ * n'empêche pas l'acquittement : ses copies passent par la file durable (ReplicationQueue),
+ * la synchronisation périodique restant le chemin de réparation. Avec plusieurs instances,
+ * chacune ne traite que les événements des ventes de ses shards (ShardLeaseManager.owned).
+ */
+@Service
+public class OutboxReplicator {
+
+    private final RegionRegistry regions;
+    private final MultiVenteService multi;
+    private final MonitoringService monitoring;
+    private final ReplicationQueue replicationQueue;
+    private final AnalyticsService analytics;
+    private final ShardLeaseManager leases;
+    private final boolean enabled;
+    private final int batchSize;
+
+    // Une tâche par région source en parallèle (threads virtuels)
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public OutboxReplicator(RegionRegistry regions, MultiVenteService multi, MonitoringService monitoring, ReplicationQueue replicationQueue,
+                            AnalyticsService analytics, ShardLeaseManager leases,
+                            @Value("${sync.outbox.enabled:true}") boolean enabled,
+                            @Value("${sync.outbox.batch-size:500}") int batchSize) {
+        this.regions = regions;
+        this.multi = multi;
+        this.monitoring = monitoring;
+        this.replicationQueue = replicationQueue;
+        this.analytics = analytics;
+        this.leases = leases;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${sync.outbox.poll-ms:200}")
+    public void replicate() {
+        if (!enabled) return;
+        // 🧩 Plusieurs instances : seuls les événements des shards de l'instance, les autres
+        //    restent dans l'outbox pour leur propriétaire
+        ShardLeaseManager.Assignment owned = leases.owned();
+        if (owned.isEmpty()) return;
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        regions.names().forEach(region -> tasks.add(() -> drain(region, owned)));
+        try {
+            executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 🔹 Vider l'outbox d'une région, lot par lot ; retourne le nombre d'événements traités
+    private int drain(String source, ShardLeaseManager.Assignment owned) {
+        int processed = 0;
+        try {
+            List<MultiVenteService.OutboxEvent> events;
+            do {
+                events = multi.pollOutbox(source, batchSize, owned.restriction(), owned.bits());
+                if (events.isEmpty()) break;
+                replicate(source, events);
+                processed += events.size();
+            } while (events.size() == batchSize);
+        } catch (RegionUnavailableException e) {
+            // Région hors ligne : son outbox sera lue à la fermeture du disjoncteur
+        } catch (Exception e) {
+            System.err.println("❌ Outbox " + source + " : " + e.getMessage());
+            monitoring.recordRegionError(source);
+        }
+        return processed;
+    }
+
+    private void replicate(String source, List<MultiVenteService.OutboxEvent> events) {
+        Set<UUID> ids = new LinkedHashSet<>();
+        events.forEach(e -> ids.add(e.venteId()));
+        List<Vente> current = multi.findAllByIds(source, ids);
+        analytics.applyAll(current);
+
+        for (String target : regions.names()) {
+            if (target.equals(source)) continue;
+            List<Vente> copies = current.stream().map(v -> LwwMerge.cloneForRegion(v, target)).toList();
+            try {
+                multi.upsertAll(target, copies);
+                monitoring.recordRegionAccess(target);
+            } catch (Exception e) {
+                System.err.println("❌ Réplication " + source + " → " + target + " : " + e.getMessage());
+                monitoring.recordRegionError(target);
+                replicationQueue.enqueue(target, copies);
+            }
+        }
+
+        multi.ackOutbox(source, events);
+        LocalDateTime now = LocalDateTime.now();
+        events.forEach(e -> monitoring.recordReplicationLag(source, Duration.between(e.createdAt(), now).toMillis()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
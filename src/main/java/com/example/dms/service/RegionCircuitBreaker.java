@@ -0,0 +1,172 @@
+package com.example.dms.service;
+
+import com.example.dms.config.RegionRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Disjoncteur par région.
+ *
+ * CLOSED    : les appels passent ; N échecs de connexion consécutifs ouvrent le circuit.
+ * OPEN      : les appels échouent immédiatement (RegionUnavailableException), sans attendre
+ *             le délai de connexion JDBC.
+ * HALF_OPEN : après open-ms, une sonde (SELECT 1) est lancée en arrière-plan ; son succès
+ *             referme le circuit, son échec le rouvre. Les requêtes ne servent jamais de sonde.
+ *
+ * Seules les erreurs de connectivité comptent : une erreur métier ou SQL n'ouvre pas le circuit.
+ */
+@Component
+public class RegionCircuitBreaker {
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private static final class Circuit {
+        State state = State.CLOSED;
+        int consecutiveFailures;
+        long openedAt;
+    }
+
+    private final RegionRegistry regions;
+    private final Map<String, Circuit> circuits = new LinkedHashMap<>();
+    private final int failureThreshold;
+    private final long openMillis;
+    // Sondes lancées sur des threads virtuels : une région muette ne bloque pas le planificateur
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public RegionCircuitBreaker(RegionRegistry regions,
+                                MeterRegistry registry,
+                                @Value("${circuit-breaker.failure-threshold:3}") int failureThreshold,
+                                @Value("${circuit-breaker.open-ms:10000}") long openMillis) {
+        this.regions = regions;
+        regions.names().forEach(region -> {
+            Circuit circuit = new Circuit();
+            circuits.put(region, circuit);
+            // 0 = CLOSED, 1 = HALF_OPEN, 2 = OPEN
+            Gauge.builder("dms.region.circuit", circuit, c -> state(c).ordinal())
+                    .tag("region", region)
+                    .register(registry);
+        });
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+    }
+
+    // 🔹 Appel protégé : échec immédiat si le circuit n'est pas fermé
+    public <T> T call(String region, Supplier<T> call) {
+        Circuit circuit = circuit(region);
+        if (state(circuit) != State.CLOSED) {
+            throw new RegionUnavailableException(region);
+        }
+        try {
+            T result = call.get();
+            synchronized (circuit) {
+                circuit.consecutiveFailures = 0;
+            }
+            return result;
+        } catch (RuntimeException e) {
+            if (isConnectivityFailure(e)) onFailure(region, circuit);
+            throw e;
+        }
+    }
+
+    public boolean isAvailable(String region) {
+        return state(circuit(region)) == State.CLOSED;
+    }
+
+    public State state(String region) {
+        return state(circuit(region));
+    }
+
+    // 🔹 Sonder les régions dont le circuit est ouvert depuis plus de open-ms
+    @Scheduled(fixedDelayString = "${circuit-breaker.probe-ms:2000}")
+    public void probe() {
+        long now = System.currentTimeMillis();
+        circuits.forEach((region, circuit) -> {
+            synchronized (circuit) {
+                if (circuit.state != State.OPEN || now - circuit.openedAt < openMillis) return;
+                circuit.state = State.HALF_OPEN;
+            }
+            executor.submit(() -> {
+                try {
+                    regions.get(region).jdbc().queryForObject("SELECT 1", Integer.class);
+                    synchronized (circuit) {
+                        circuit.state = State.CLOSED;
+                        circuit.consecutiveFailures = 0;
+                    }
+                    System.out.println("🟢 " + region + " : région de nouveau joignable, circuit refermé");
+                } catch (RuntimeException e) {
+                    synchronized (circuit) {
+                        circuit.state = State.OPEN;
+                        circuit.openedAt = System.currentTimeMillis();
+                    }
+                }
+            });
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void onFailure(String region, Circuit circuit) {
+        synchronized (circuit) {
+            circuit.consecutiveFailures++;
+            if (circuit.state == State.CLOSED && circuit.consecutiveFailures >= failureThreshold) {
+                circuit.state = State.OPEN;
+                circuit.openedAt = System.currentTimeMillis();
+                System.err.println("🔴 " + region + " : " + circuit.consecutiveFailures
+                        + " échecs de connexion consécutifs, circuit ouvert");
+            }
+        }
+    }
+
+    private Circuit circuit(String region) {
+        Circuit circuit = circuits.get(region);
+        if (circuit == null) throw new IllegalArgumentException("Région inconnue : " + region);
+        return circuit;
+    }
+
+    private static State state(Circuit circuit) {
+        synchronized (circuit) {
+            return circuit.state;
+        }
+    }
+
+    // Erreur de connectivité (base injoignable, connexion perdue, délai dépassé) ?
+    static boolean isConnectivityFailure(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof RegionUnavailableException) return false;
+            if (t instanceof DataAccessResourceFailureException
+                    || t instanceof CannotCreateTransactionException
+                    || t instanceof QueryTimeoutException
+                    || t instanceof SQLTransientConnectionException
+                    || t instanceof SQLRecoverableException
+                    || t instanceof ConnectException
+                    || t instanceof SocketTimeoutException) {
+                return true;
+            }
+            // Classe SQLSTATE 08 : exception de connexion
+            if (t instanceof SQLException sql && sql.getSQLState() != null && sql.getSQLState().startsWith("08")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
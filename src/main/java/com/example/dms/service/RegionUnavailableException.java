@@ -0,0 +1,18 @@
+package com.example.dms.service;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+
+// 🔹 Levée sans appel réseau quand le disjoncteur d'une région est ouvert
+public class RegionUnavailableException extends DataAccessResourceFailureException {
+
+    private final String region;
+
+    public RegionUnavailableException(String region) {
+        super("Région " + region + " indisponible (disjoncteur ouvert)");
+        this.region = region;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+}
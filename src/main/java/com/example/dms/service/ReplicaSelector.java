@@ -0,0 +1,99 @@
+package com.example.dms.service;
+
+import com.example.dms.config.RegionRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Choix de la région qui sert seule une lecture globale (mode de lecture "replica").
+ *
+ * Après un cycle de synchronisation sans erreur, une région qui a reçu sa propagation contient
+ * toutes les versions écrites avant le début du cycle : elle est à jour à cet instant. Une lecture
+ * globale peut alors être servie par cette seule région si elle est joignable et à jour depuis
+ * moins de max-staleness-ms ; parmi les candidates, la plus rapide (moyenne glissante des durées
+ * de lecture). Une candidate jamais mesurée passe en premier, et une part explore-ratio des lectures
+ * va à une autre candidate tirée au hasard : la latence des régions non choisies est re-mesurée
+ * (une région lente le temps d'un incident n'est pas écartée pour toujours). Sans candidate, la
+ * lecture est fusionnée sur toutes les régions.
+ */
+@Component
+public class ReplicaSelector {
+
+    // Poids de la dernière mesure dans la moyenne glissante des latences
+    private static final double ALPHA = 0.2;
+
+    private final RegionRegistry regions;
+    private final RegionCircuitBreaker breaker;
+    private final boolean replicaReads;
+    private final long maxStalenessMillis;
+    private final double exploreRatio;
+
+    // Instant jusqu'auquel chaque région a reçu toutes les écritures (début du dernier cycle réussi)
+    private final Map<String, LocalDateTime> syncedAsOf = new ConcurrentHashMap<>();
+    // Durée moyenne (ms) des lectures de chaque région
+    private final Map<String, Double> latencyMillis = new ConcurrentHashMap<>();
+
+    public ReplicaSelector(RegionRegistry regions, RegionCircuitBreaker breaker,
+                           @Value("${reads.mode:replica}") String mode,
+                           @Value("${reads.max-staleness-ms:120000}") long maxStalenessMillis,
+                           @Value("${reads.explore-ratio:0.05}") double exploreRatio) {
+        this.regions = regions;
+        this.breaker = breaker;
+        this.replicaReads = "replica".equalsIgnoreCase(mode);
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.exploreRatio = exploreRatio;
+    }
+
+    // 🔹 Région à lire seule, ou vide si la lecture doit être fusionnée
+    public Optional<String> choose() {
+        if (!replicaReads) return Optional.empty();
+        List<String> candidates = regions.names().stream().filter(this::isFresh).toList();
+        if (candidates.isEmpty()) return Optional.empty();
+
+        Optional<String> unmeasured = candidates.stream().filter(region -> !latencyMillis.containsKey(region)).findFirst();
+        if (unmeasured.isPresent()) return unmeasured;
+        String fastest = candidates.stream()
+                .min(Comparator.comparingDouble(latencyMillis::get))
+                .orElseThrow();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (candidates.size() > 1 && random.nextDouble() < exploreRatio) {
+            List<String> others = candidates.stream().filter(region -> !region.equals(fastest)).toList();
+            return Optional.of(others.get(random.nextInt(others.size())));
+        }
+        return Optional.of(fastest);
+    }
+
+    // 🔹 Région joignable et à jour depuis moins de max-staleness-ms (quel que soit le mode de lecture)
+    public boolean isFresh(String region) {
+        LocalDateTime asOf = syncedAsOf.get(region);
+        return asOf != null && breaker.isAvailable(region)
+                && !asOf.isBefore(LocalDateTime.now().minus(Duration.ofMillis(maxStalenessMillis)));
+    }
+
+    // 🔹 La région a reçu toutes les écritures antérieures à "asOf"
+    public void markSynced(String region, LocalDateTime asOf) {
+        syncedAsOf.merge(region, asOf, (a, b) -> a.isAfter(b) ? a : b);
+    }
+
+    public void recordLatency(String region, long durationNanos) {
+        double millis = durationNanos / 1e6;
+        latencyMillis.merge(region, millis, (avg, sample) -> avg + ALPHA * (sample - avg));
+    }
+
+    public LocalDateTime syncedAsOf(String region) {
+        return syncedAsOf.get(region);
+    }
+
+    public Double latencyMillis(String region) {
+        return latencyMillis.get(region);
+    }
+}
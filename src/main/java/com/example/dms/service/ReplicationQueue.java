@@ -0,0 +1,354 @@
+package com.example.dms.service;
+
+import com.example.dms.config.RegionRegistry;
+import com.example.dms.model.Vente;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+/**
+ * File de réplication durable, une par région cible.
+ *
+ * Les propagations qui échouent (région injoignable, délai dépassé) y sont enregistrées au lieu
+ * d'être redécouvertes à chaque cycle. Chaque file est un journal en ajout seul sur disque
+ * ({@code <dir>/<région>.log}, enregistrements [longueur][données][CRC32]) doublé d'un index
+ * mémoire qui ne garde que la version la plus récente de chaque ID.
+ *
+ * Le rejeu passe par l'upsert Last-Write-Wins : une version périmée est simplement ignorée.
+ * Après un échec, la région n'est retentée qu'après un délai exponentiel (avec gigue). Tant que
+ * son disjoncteur est ouvert, elle n'est pas retentée du tout (sans compter de tentative) ; à sa
+ * fermeture le délai est remis à zéro et la file est rejouée au cycle suivant.
+ * Après un rejeu réussi le journal est réécrit avec les seules entrées restantes. Avec plusieurs
+ * instances, seules les ventes des shards de l'instance sont rejouées (ShardLeaseManager.owned).
+ */
+@Component
+public class ReplicationQueue {
+
+    private final MultiVenteService multi;
+    private final RegionCircuitBreaker breaker;
+    private final ShardLeaseManager leases;
+    private final Path dir;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Map<String, RegionQueue> queues = new LinkedHashMap<>();
+
+    // Entrée en attente : dernière version connue et date de la première mise en file
+    record Pending(Vente vente, long enqueuedAt) {}
+
+    private static final class RegionQueue {
+        final String region;
+        final Path file;
+        // Ordre d'insertion conservé : la première entrée est la plus ancienne
+        final Map<UUID, Pending> pending = new LinkedHashMap<>();
+        FileChannel channel;
+        int attempts;
+        long nextAttemptAt;
+        // Rejeu suspendu par le disjoncteur de la région
+        boolean circuitOpen;
+
+        RegionQueue(String region, Path file) {
+            this.region = region;
+            this.file = file;
+        }
+
+        synchronized int depth() {
+            return pending.size();
+        }
+
+        synchronized double oldestAgeSeconds() {
+            if (pending.isEmpty()) return 0;
+            return (System.currentTimeMillis() - pending.values().iterator().next().enqueuedAt()) / 1000.0;
+        }
+    }
+
+    public ReplicationQueue(RegionRegistry regions, MultiVenteService multi, RegionCircuitBreaker breaker,
+                            ShardLeaseManager leases, MeterRegistry registry,
+                            @Value("${sync.queue.dir:./data/replication-queue}") String dir,
+                            @Value("${sync.queue.retry-initial-ms:1000}") long initialBackoffMillis,
+                            @Value("${sync.queue.retry-max-ms:300000}") long maxBackoffMillis) {
+        this.multi = multi;
+        this.breaker = breaker;
+        this.leases = leases;
+        this.dir = Paths.get(dir);
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        try {
+            Files.createDirectories(this.dir);
+            for (String region : regions.names()) {
+                RegionQueue q = new RegionQueue(region, this.dir.resolve(region + ".log"));
+                load(q);
+                queues.put(region, q);
+                Gauge.builder("dms.replication.queue.depth", q, RegionQueue::depth)
+                        .tag("region", region)
+                        .register(registry);
+                Gauge.builder("dms.replication.queue.age", q, RegionQueue::oldestAgeSeconds)
+                        .tag("region", region)
+                        .baseUnit("seconds")
+                        .register(registry);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("File de réplication illisible : " + this.dir, e);
+        }
+    }
+
+    // 🔹 Mettre en file des versions à écrire dans une région (écrites sur disque avant retour)
+    public void enqueue(String region, List<Vente> ventes) {
+        if (ventes.isEmpty()) return;
+        RegionQueue q = queues.get(region);
+        long now = System.currentTimeMillis();
+        synchronized (q) {
+            try {
+                int added = 0;
+                for (Vente v : ventes) {
+                    Pending existing = q.pending.get(v.getId());
+                    if (existing != null && !isNewer(v, existing.vente())) continue;
+                    Pending entry = new Pending(v, existing != null ? existing.enqueuedAt() : now);
+                    q.pending.put(v.getId(), entry);
+                    write(q.channel, frame(entry));
+                    added++;
+                }
+                q.channel.force(false);
+                System.out.println("📥 " + added + " ventes mises en file pour " + region
+                        + " (" + q.pending.size() + " en attente)");
+            } catch (IOException e) {
+                throw new UncheckedIOException("Écriture impossible dans la file " + region, e);
+            }
+        }
+    }
+
+    // 🔹 Rejouer les files dont le délai d'attente est écoulé
+    @Scheduled(fixedDelayString = "${sync.queue.poll-ms:1000}")
+    public void replay() {
+        // 🧩 Plusieurs instances : baux expirés, rien n'est rejoué ni oublié avant leur renouvellement
+        ShardLeaseManager.Assignment owned = leases.owned();
+        if (owned.isEmpty()) return;
+        for (RegionQueue q : queues.values()) {
+            List<Pending> batch;
+            synchronized (q) {
+                dropForeign(q, owned);
+                if (q.pending.isEmpty()) continue;
+                if (!breaker.isAvailable(q.region)) {
+                    q.circuitOpen = true;
+                    continue;
+                }
+                if (q.circuitOpen) {
+                    // Région de nouveau joignable : les échecs d'avant la panne ne retardent plus le rejeu
+                    q.circuitOpen = false;
+                    q.attempts = 0;
+                    q.nextAttemptAt = 0;
+                }
+                if (System.currentTimeMillis() < q.nextAttemptAt) continue;
+                batch = new ArrayList<>(q.pending.values());
+            }
+            try {
+                int written = multi.upsertAll(q.region, batch.stream().map(Pending::vente).toList());
+                synchronized (q) {
+                    // Une version plus récente arrivée pendant le rejeu reste en file
+                    batch.forEach(p -> q.pending.remove(p.vente().getId(), p));
+                    q.attempts = 0;
+                    q.nextAttemptAt = 0;
+                    rewrite(q);
+                }
+                System.out.println("📤 File " + q.region + " rejouée : " + written + "/" + batch.size() + " ventes écrites");
+            } catch (RegionUnavailableException e) {
+                // Circuit ouvert pendant le rejeu : attendre sa fermeture, sans compter de tentative
+                synchronized (q) {
+                    q.circuitOpen = true;
+                }
+            } catch (Exception e) {
+                synchronized (q) {
+                    q.attempts++;
+                    long delay = backoff(q.attempts);
+                    q.nextAttemptAt = System.currentTimeMillis() + delay;
+                    System.err.println("⏳ File " + q.region + " : échec du rejeu (tentative " + q.attempts
+                            + "), nouvel essai dans " + delay + " ms : " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Entrées des shards repris par une autre instance : sa passe de réparation (shards réattribués)
+    // les propage, l'instance ne les rejoue pas
+    private void dropForeign(RegionQueue q, ShardLeaseManager.Assignment owned) {
+        if (owned.all()) return;
+        int before = q.pending.size();
+        q.pending.values().removeIf(p -> !owned.owns(p.vente().getId()));
+        if (q.pending.size() < before) {
+            rewrite(q);
+            System.out.println("🧩 File " + q.region + " : " + (before - q.pending.size())
+                    + " ventes de shards repris par une autre instance retirées");
+        }
+    }
+
+    private long backoff(int attempts) {
+        long delay = initialBackoffMillis << Math.min(attempts - 1, 20);
+        delay = Math.min(Math.max(delay, initialBackoffMillis), maxBackoffMillis);
+        return delay + ThreadLocalRandom.current().nextLong(delay / 10 + 1);
+    }
+
+    @PreDestroy
+    public void close() {
+        for (RegionQueue q : queues.values()) {
+            synchronized (q) {
+                try {
+                    q.channel.close();
+                } catch (IOException e) {
+                    System.err.println("⚠️ Fermeture de la file " + q.region + " : " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // 🔹 Relire le journal au démarrage ; un enregistrement incomplet ou corrompu (arrêt brutal
+    //    pendant une écriture) termine la lecture, le journal est ensuite réécrit compacté
+    private void load(RegionQueue q) throws IOException {
+        if (Files.exists(q.file)) {
+            for (Pending entry : readLog(ByteBuffer.wrap(Files.readAllBytes(q.file)))) {
+                Pending existing = q.pending.get(entry.vente().getId());
+                if (existing == null || isNewer(entry.vente(), existing.vente())) {
+                    q.pending.put(entry.vente().getId(),
+                            existing != null ? new Pending(entry.vente(), existing.enqueuedAt()) : entry);
+                }
+            }
+            if (!q.pending.isEmpty()) {
+                System.out.println("📥 File " + q.region + " : " + q.pending.size() + " ventes en attente");
+            }
+        }
+        rewrite(q);
+    }
+
+    // 🔹 Enregistrements lisibles d'un journal, dans l'ordre ; s'arrête au premier incomplet ou corrompu
+    static List<Pending> readLog(ByteBuffer buffer) throws IOException {
+        List<Pending> entries = new ArrayList<>();
+        while (buffer.remaining() >= Integer.BYTES) {
+            int length = buffer.getInt();
+            if (length <= 0 || buffer.remaining() < length + Integer.BYTES) break;
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            int crc = buffer.getInt();
+            if (crc != crc(payload)) break;
+            entries.add(decode(payload));
+        }
+        return entries;
+    }
+
+    // 🔹 Réécrire le journal avec les entrées en attente (fichier temporaire puis renommage atomique)
+    private void rewrite(RegionQueue q) {
+        try {
+            if (q.channel != null) q.channel.close();
+            Path tmp = q.file.resolveSibling(q.file.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (Pending p : q.pending.values()) {
+                    write(out, frame(p));
+                }
+                out.force(false);
+            }
+            Files.move(tmp, q.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            q.channel = FileChannel.open(q.file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Réécriture impossible de la file " + q.region, e);
+        }
+    }
+
+    // Même règle que MergeKernel (ordre total de HybridLogicalClock)
+    private static boolean isNewer(Vente candidate, Vente current) {
+        return HybridLogicalClock.isNewer(candidate, current);
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Enregistrement [longueur][données][CRC32] d'une entrée
+    static ByteBuffer frame(Pending p) throws IOException {
+        byte[] payload = encode(p);
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * 2 + payload.length);
+        buffer.putInt(payload.length).put(payload).putInt(crc(payload)).flip();
+        return buffer;
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(Pending p) throws IOException {
+        Vente v = p.vente();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(v.getId().getMostSignificantBits());
+        out.writeLong(v.getId().getLeastSignificantBits());
+        out.writeLong(p.enqueuedAt());
+        out.writeUTF(v.getRegion() != null ? v.getRegion() : "");
+        out.writeLong(toEpochMicros(v.getUpdatedAt()));
+        out.writeLong(v.getDateVente() != null ? v.getDateVente().toEpochDay() : Long.MIN_VALUE);
+        out.writeBoolean(v.getMontant() != null);
+        out.writeDouble(v.getMontant() != null ? v.getMontant() : 0);
+        out.writeBoolean(v.getProduit() != null);
+        out.writeUTF(v.getProduit() != null ? v.getProduit() : "");
+        out.writeBoolean(Boolean.TRUE.equals(v.getDeleted()));
+        out.writeLong(toEpochMicros(v.getDeletedAt()));
+        // Ajoutés en fin d'enregistrement : les journaux écrits sans eux restent lisibles
+        out.writeLong(HybridLogicalClock.versionOf(v));
+        out.writeBoolean(v.getOriginRegion() != null);
+        out.writeUTF(v.getOriginRegion() != null ? v.getOriginRegion() : "");
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Pending decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        Vente v = new Vente();
+        v.setId(new UUID(in.readLong(), in.readLong()));
+        long enqueuedAt = in.readLong();
+        String region = in.readUTF();
+        v.setRegion(region.isEmpty() ? null : region);
+        v.setUpdatedAt(fromEpochMicros(in.readLong()));
+        long epochDay = in.readLong();
+        v.setDateVente(epochDay != Long.MIN_VALUE ? LocalDate.ofEpochDay(epochDay) : null);
+        boolean hasMontant = in.readBoolean();
+        double montant = in.readDouble();
+        v.setMontant(hasMontant ? montant : null);
+        boolean hasProduit = in.readBoolean();
+        String produit = in.readUTF();
+        v.setProduit(hasProduit ? produit : null);
+        v.setDeleted(in.readBoolean());
+        v.setDeletedAt(fromEpochMicros(in.readLong()));
+        if (in.available() > 0) {
+            v.setVersion(in.readLong());
+            boolean hasOrigin = in.readBoolean();
+            String origin = in.readUTF();
+            v.setOriginRegion(hasOrigin ? origin : null);
+        }
+        return new Pending(v, enqueuedAt);
+    }
+
+    private static long toEpochMicros(LocalDateTime t) {
+        if (t == null) return Long.MIN_VALUE;
+        return t.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + t.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromEpochMicros(long micros) {
+        if (micros == Long.MIN_VALUE) return null;
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+}
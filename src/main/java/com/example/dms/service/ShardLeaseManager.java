@@ -0,0 +1,212 @@
+package com.example.dms.service;
+
+import com.example.dms.config.RegionRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Répartition de la synchronisation entre plusieurs instances de l'application (sync.cluster).
+ *
+ * L'espace des UUID est découpé en 2^shard-bits shards (préfixes d'UUID) ; chaque instance ne
+ * synchronise que les shards dont elle détient le bail. Baux et battements de cœur sont gardés
+ * dans la base de la première région joignable (ordre de la configuration), sans coordinateur
+ * externe. Au début de chaque cycle, sous pg_advisory_xact_lock (une seule instance répartit à
+ * la fois), l'instance signale qu'elle est vivante, oublie les instances muettes depuis lease-ms,
+ * renouvelle ses baux, puis rend ou prend des shards libres ou expirés jusqu'à sa part
+ * (shards / instances vivantes). Les shards d'une instance morte sont repris à l'expiration
+ * de leurs baux ; ceux d'une instance arrêtée proprement, au cycle suivant.
+ *
+ * Les échéances et les dates de synchronisation (synced_at) sont calculées par PostgreSQL (now()) :
+ * les horloges des instances n'interviennent pas. Une double propriété transitoire (bascule vers une autre région de coordination, instance
+ * trop lente pour renouveler ses baux) ne coûte que du travail en double : l'upsert Last-Write-Wins
+ * est idempotent. Désactivé, tous les shards reviennent à l'instance sans requête de coordination.
+ *
+ * Les tâches de fond (OutboxReplicator, ReplicationQueue, TombstonePurger) ne traitent que les
+ * ventes des shards dont l'instance détient le bail (owned()) : chaque vente a un seul responsable.
+ */
+@Service
+public class ShardLeaseManager {
+
+    // Clé du verrou consultatif de répartition ("DMSS")
+    private static final long LOCK_KEY = 0x444D5353L;
+
+    // 🔹 Shards confiés à l'instance pour un cycle (préfixes d'UUID de "bits" bits)
+    //    members : instances vivantes ; syncedAsOf : plus ancien synced_at de tous les shards, ramené
+    //    sur l'horloge de l'instance, null si l'un n'a jamais été synchronisé ; startedAt : now() de
+    //    la base de coordination au début du cycle, valeur de synced_at si le cycle aboutit
+    public record Assignment(int bits, Set<Integer> shards, int members, LocalDateTime syncedAsOf,
+                             LocalDateTime startedAt) {
+
+        public boolean all() {
+            return shards.size() == 1 << bits;
+        }
+
+        public boolean isEmpty() {
+            return shards.isEmpty();
+        }
+
+        // Shards en argument des lectures restreintes de MultiVenteService (null : tous, sans condition)
+        public Set<Integer> restriction() {
+            return all() ? null : shards;
+        }
+
+        public boolean owns(UUID id) {
+            return shards.contains(bits == 0 ? 0 : (int) (id.getMostSignificantBits() >>> (64 - bits)));
+        }
+    }
+
+    private final RegionRegistry regions;
+    private final RegionCircuitBreaker breaker;
+    private final MonitoringService monitoring;
+    private final boolean enabled;
+    private final int bits;
+    private final long leaseMillis;
+    private final String instanceId;
+
+    // Dernière répartition obtenue, région qui la porte et échéance locale de ses baux
+    private volatile Assignment current;
+    private volatile String coordinationRegion;
+    private volatile long validUntilNanos;
+
+    public ShardLeaseManager(RegionRegistry regions, RegionCircuitBreaker breaker, MonitoringService monitoring,
+                             @Value("${sync.cluster.enabled:false}") boolean enabled,
+                             @Value("${sync.cluster.shard-bits:4}") int shardBits,
+                             @Value("${sync.cluster.lease-ms:300000}") long leaseMillis,
+                             @Value("${sync.cluster.instance-id:}") String instanceId) {
+        this.regions = regions;
+        this.breaker = breaker;
+        this.monitoring = monitoring;
+        this.enabled = enabled;
+        this.bits = enabled ? Math.max(1, Math.min(shardBits, 8)) : 0;
+        this.leaseMillis = leaseMillis;
+        this.instanceId = instanceId.isBlank() ? UUID.randomUUID().toString() : instanceId;
+    }
+
+    // 🔹 Shards à synchroniser pendant ce cycle (renouvelle les baux et rééquilibre)
+    public Assignment acquire() {
+        if (!enabled) return new Assignment(0, Set.of(0), 1, null, null);
+        for (String region : regions.names()) {
+            if (!breaker.isAvailable(region)) continue;
+            long start = System.nanoTime();
+            try {
+                RegionRegistry.Region target = regions.get(region);
+                Assignment next = breaker.call(region, () -> target.tx().execute(status -> rebalance(target.jdbc())));
+                monitoring.recordShards(instanceId, region, next.shards().size(), 1 << bits, next.members());
+                if (current == null || !next.shards().equals(current.shards()) || !region.equals(coordinationRegion)) {
+                    System.out.println("🧩 Shards de synchronisation (" + region + ") : " + next.shards().size()
+                            + "/" + (1 << bits) + " " + next.shards());
+                }
+                current = next;
+                coordinationRegion = region;
+                validUntilNanos = start + leaseMillis * 1_000_000;
+                return next;
+            } catch (RuntimeException e) {
+                System.err.println("⚠️ Baux de synchronisation indisponibles dans " + region + " : " + e.getMessage());
+            }
+        }
+        // Aucune région de coordination joignable : les shards sont gardés tant que leurs baux courent
+        Assignment kept = current;
+        if (kept != null && System.nanoTime() - validUntilNanos < 0) return kept;
+        monitoring.recordShards(instanceId, null, 0, 1 << bits, 0);
+        return new Assignment(bits, Set.of(), 0, null, null);
+    }
+
+    // 🔹 Shards dont l'instance détient encore le bail, pour les tâches de fond (outbox, file de
+    //    réplication, purge des tombstones) ; vide si les baux ont expiré sans être renouvelés :
+    //    une autre instance a pu reprendre les shards
+    public Assignment owned() {
+        if (!enabled) return new Assignment(0, Set.of(0), 1, null, null);
+        Assignment kept = current;
+        if (kept != null && System.nanoTime() - validUntilNanos < 0) return kept;
+        return new Assignment(bits, Set.of(), 0, null, null);
+    }
+
+    // 🔹 Cycle sans erreur : toutes les régions ont reçu les versions des shards écrites avant son
+    //    début, daté par la base de coordination (startedAt) et non par l'horloge de l'instance
+    public void markSynced(Assignment assignment) {
+        String region = coordinationRegion;
+        if (!enabled || region == null || assignment.isEmpty() || assignment.startedAt() == null) return;
+        List<Object[]> args = assignment.shards().stream()
+                .map(shard -> new Object[]{assignment.startedAt(), shard, instanceId})
+                .toList();
+        try {
+            breaker.call(region, () -> regions.get(region).jdbc()
+                    .batchUpdate("UPDATE sync_lease SET synced_at = ? WHERE shard = ? AND owner = ?", args));
+        } catch (RuntimeException e) {
+            System.err.println("⚠️ Fraîcheur des shards non enregistrée : " + e.getMessage());
+        }
+    }
+
+    // 🔹 Arrêt propre : les shards sont rendus sans attendre l'expiration des baux
+    @PreDestroy
+    public void release() {
+        String region = coordinationRegion;
+        if (!enabled || region == null) return;
+        try {
+            RegionRegistry.Region target = regions.get(region);
+            target.tx().execute(status -> {
+                target.jdbc().update("DELETE FROM sync_member WHERE instance = ?", instanceId);
+                return target.jdbc().update("UPDATE sync_lease SET owner = NULL, expires_at = now() WHERE owner = ?", instanceId);
+            });
+            System.out.println("🧩 Shards de synchronisation rendus (" + region + ")");
+        } catch (RuntimeException e) {
+            System.err.println("⚠️ Shards non rendus, repris à l'expiration des baux : " + e.getMessage());
+        }
+    }
+
+    // Répartition dans la région de coordination, dans une transaction sous verrou consultatif
+    private Assignment rebalance(JdbcTemplate jdbc) {
+        int total = 1 << bits;
+        jdbc.execute("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")");
+
+        jdbc.update("INSERT INTO sync_member (instance, heartbeat_at) VALUES (?, now()) "
+                + "ON CONFLICT (instance) DO UPDATE SET heartbeat_at = now()", instanceId);
+        jdbc.update("DELETE FROM sync_member WHERE heartbeat_at < now() - ? * interval '1 millisecond'", leaseMillis);
+        List<String> members = jdbc.queryForList("SELECT instance FROM sync_member ORDER BY instance", String.class);
+        jdbc.update("INSERT INTO sync_lease (shard, expires_at) SELECT g, now() FROM generate_series(0, ?) g "
+                + "ON CONFLICT (shard) DO NOTHING", total - 1);
+
+        // Part de l'instance : les premières (dans l'ordre des identifiants) prennent le reste de la division
+        int index = members.indexOf(instanceId);
+        int quota = total / members.size() + (index < total % members.size() ? 1 : 0);
+
+        List<Integer> owned = new ArrayList<>(jdbc.queryForList(
+                "UPDATE sync_lease SET expires_at = now() + ? * interval '1 millisecond' "
+                        + "WHERE owner = ? AND shard < ? RETURNING shard", Integer.class, leaseMillis, instanceId, total));
+        Collections.sort(owned);
+        if (owned.size() > quota) {
+            List<Integer> excess = owned.subList(quota, owned.size());
+            jdbc.batchUpdate("UPDATE sync_lease SET owner = NULL, expires_at = now() WHERE shard = ?",
+                    excess.stream().map(shard -> new Object[]{shard}).toList());
+            excess.clear();
+        } else if (owned.size() < quota) {
+            List<Integer> free = jdbc.queryForList("SELECT shard FROM sync_lease "
+                    + "WHERE shard < ? AND (owner IS NULL OR expires_at < now()) ORDER BY shard LIMIT ?",
+                    Integer.class, total, quota - owned.size());
+            if (!free.isEmpty()) {
+                jdbc.batchUpdate("UPDATE sync_lease SET owner = ?, expires_at = now() + ? * interval '1 millisecond' "
+                        + "WHERE shard = ?", free.stream().map(shard -> new Object[]{instanceId, leaseMillis, shard}).toList());
+                owned.addAll(free);
+            }
+        }
+
+        // Fraîcheur mesurée sur l'horloge de la base (now() - min(synced_at)), puis reportée sur celle
+        // de l'instance, à laquelle ReplicaSelector compare les dates de synchronisation
+        Map<String, Object> freshness = jdbc.queryForMap("SELECT now()::timestamp AS started_at, "
+                + "CASE WHEN count(synced_at) = count(*) THEN min(synced_at) END AS synced_at "
+                + "FROM sync_lease WHERE shard < ?", total);
+        LocalDateTime startedAt = ((Timestamp) freshness.get("started_at")).toLocalDateTime();
+        Timestamp syncedAt = (Timestamp) freshness.get("synced_at");
+        LocalDateTime syncedAsOf = syncedAt == null ? null
+                : LocalDateTime.now().minus(Duration.between(syncedAt.toLocalDateTime(), startedAt));
+        return new Assignment(bits, Collections.unmodifiableSortedSet(new TreeSet<>(owned)), members.size(),
+                syncedAsOf, startedAt);
+    }
+}
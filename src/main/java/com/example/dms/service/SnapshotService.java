@@ -0,0 +1,121 @@
+package com.example.dms.service;
+
+import com.example.dms.config.RegionRegistry;
+import com.example.dms.model.Vente;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Instantané global des ventes (VenteSnapshot), publié par SyncService à la fin de chaque cycle.
+ *
+ * Un cycle complet sans erreur reconstruit l'instantané à partir des versions gagnantes ; un cycle
+ * incrémental (delta, empreintes) applique ses gagnantes au précédent. Sans instantané précédent,
+ * toutes les régions sont relues une fois. Le nouvel instantané remplace l'ancien en une seule
+ * affectation : les lecteurs ne prennent aucun verrou et voient toujours un instantané entier.
+ *
+ * Instance ne synchronisant qu'une partie des shards (sync.cluster) : l'instantané reçoit à chaque
+ * cycle les versions gagnantes de ses shards ; les autres shards sont relus dans une seule région,
+ * à jour au "asOf" commun à tous les shards, et seulement pour les versions postérieures à
+ * l'instantané précédent (moins sync.delta.overlap-ms). Seule la première construction lit toute
+ * la table de cette région.
+ */
+@Service
+public class SnapshotService {
+
+    private final RegionRegistry regions;
+    private final MultiVenteService multi;
+    private final boolean enabled;
+    private final long overlapMillis;
+
+    private final AtomicReference<VenteSnapshot> current = new AtomicReference<>();
+    // Shards restés à l'instance depuis la dernière relecture des autres : leurs changements
+    // sont tous arrivés par les versions gagnantes
+    private Set<Integer> ownedSinceRead = Set.of();
+
+    public SnapshotService(RegionRegistry regions, MultiVenteService multi,
+                           @Value("${snapshot.enabled:true}") boolean enabled,
+                           @Value("${sync.delta.overlap-ms:5000}") long overlapMillis) {
+        this.regions = regions;
+        this.multi = multi;
+        this.enabled = enabled;
+        this.overlapMillis = overlapMillis;
+    }
+
+    // 🔹 Instantané courant, vide tant qu'aucun cycle ne l'a construit
+    public Optional<VenteSnapshot> current() {
+        return Optional.ofNullable(current.get());
+    }
+
+    // 🔹 Fin de cycle : versions gagnantes du cycle ; complete = toutes les ventes de toutes les régions
+    public synchronized void publish(Collection<Vente> winners, boolean complete, LocalDateTime asOf) {
+        if (!enabled) return;
+        VenteSnapshot base = complete ? VenteSnapshot.empty() : current.get();
+        try {
+            if (base == null) base = loadAll();
+            VenteSnapshot next = base.apply(winners, asOf);
+            current.set(next);
+            System.out.println("🗂️ Instantané global : " + next.size() + " ventes au " + asOf);
+        } catch (RuntimeException e) {
+            // L'instantané précédent reste servi ; le prochain cycle réessaie
+            System.err.println("⚠️ Instantané global non publié : " + e.getMessage());
+        }
+    }
+
+    // 🔹 Instance ne synchronisant qu'une partie des shards (sync.cluster) : versions gagnantes de
+    //    ses shards, plus, si "asOf" avance, changements des autres shards lus dans "region"
+    //    (null : aucune région à jour, l'instantané existant ne reçoit que les gagnantes)
+    public synchronized void publishShards(Collection<Vente> winners, ShardLeaseManager.Assignment owned,
+                                           String region, LocalDateTime asOf) {
+        if (!enabled) return;
+        VenteSnapshot base = current.get();
+        Set<Integer> unchanged = new HashSet<>(ownedSinceRead);
+        unchanged.retainAll(owned.shards());
+        ownedSinceRead = unchanged;
+        List<Vente> changes = new ArrayList<>(winners);
+        LocalDateTime nextAsOf = base != null ? base.asOf() : null;
+
+        if (region != null && asOf != null && (nextAsOf == null || asOf.isAfter(nextAsOf))) {
+            try {
+                if (base == null) {
+                    changes.addAll(multi.findAllFrom(region));
+                    base = VenteSnapshot.empty();
+                } else {
+                    Set<Integer> others = new TreeSet<>();
+                    for (int shard = 0; shard < 1 << owned.bits(); shard++) {
+                        if (!unchanged.contains(shard)) others.add(shard);
+                    }
+                    long since = HybridLogicalClock.minusMillis(HybridLogicalClock.fromTimestamp(nextAsOf), overlapMillis);
+                    changes.addAll(multi.findChangedSince(region, since, others, owned.bits()));
+                }
+                ownedSinceRead = owned.shards();
+                nextAsOf = asOf;
+            } catch (RuntimeException e) {
+                System.err.println("⚠️ Instantané global : autres shards non relus depuis " + region + " : " + e.getMessage());
+            }
+        }
+        if (base == null) return;
+
+        try {
+            VenteSnapshot next = base.apply(changes, nextAsOf);
+            current.set(next);
+            System.out.println("🗂️ Instantané global : " + next.size() + " ventes au " + nextAsOf);
+        } catch (RuntimeException e) {
+            // Gagnantes perdues pour l'instantané : la prochaine relecture couvre tous les shards
+            ownedSinceRead = Set.of();
+            System.err.println("⚠️ Instantané global non publié : " + e.getMessage());
+        }
+    }
+
+    // Première construction : lecture de toutes les régions (une région injoignable fait échouer)
+    private VenteSnapshot loadAll() {
+        List<Vente> all = new ArrayList<>();
+        for (String region : regions.names()) {
+            all.addAll(multi.findAllFrom(region));
+        }
+        return VenteSnapshot.empty().apply(all, null);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.dms.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lancement des cycles de synchronisation : un seul cycle à la fois, à intervalle adaptatif.
+ *
+ * Une demande manuelle lance le cycle sur le thread appelant si aucun n'est en cours ; sinon elle
+ * est regroupée avec les autres demandes en un seul cycle, lancé dès la fin du cycle en cours.
+ * Un déclenchement planifié qui trouve un cycle en cours est simplement sauté.
+ *
+ * Le délai avant le cycle suivant suit le volume de changements du dernier cycle : divisé par deux
+ * au-delà de busy-changes (bornes min-ms), allongé de moitié quand rien n'a changé (borne max-ms),
+ * ramené vers sync.interval entre les deux. Un cycle en échec ne le modifie pas.
+ */
+@Service
+public class SyncCoordinator implements SchedulingConfigurer {
+
+    private final SyncService sync;
+    private final MonitoringService monitoring;
+    private final long baseInterval;
+    private final long minInterval;
+    private final long maxInterval;
+    private final long busyChanges;
+
+    // Délai (ms) entre la fin d'un cycle planifié et le début du suivant
+    private volatile long interval;
+
+    private final ReentrantLock running = new ReentrantLock();
+    // Au moins une demande de cycle pas encore servie
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    public SyncCoordinator(SyncService sync, MonitoringService monitoring,
+                           @Value("${sync.interval}") long baseInterval,
+                           @Value("${sync.adaptive.min-ms:10000}") long minInterval,
+                           @Value("${sync.adaptive.max-ms:90000}") long maxInterval,
+                           @Value("${sync.adaptive.busy-changes:100}") long busyChanges) {
+        this.sync = sync;
+        this.monitoring = monitoring;
+        this.minInterval = Math.min(minInterval, baseInterval);
+        this.maxInterval = Math.max(maxInterval, baseInterval);
+        this.baseInterval = baseInterval;
+        this.busyChanges = Math.max(1, busyChanges);
+        this.interval = baseInterval;
+        monitoring.recordSyncInterval(baseInterval);
+    }
+
+    // 🔹 Premier cycle au démarrage, puis "interval" ms après la fin de chaque cycle planifié
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        registrar.addTriggerTask(this::scheduledRun, context -> {
+            Instant last = context.lastCompletion();
+            return last == null ? Instant.now() : last.plusMillis(interval);
+        });
+    }
+
+    // Le verrou est pris directement (pas de test préalable) : deux déclenchements simultanés ne
+    // peuvent pas lancer deux cycles. Le cycle planifié sert aussi les demandes manuelles déjà
+    // reçues ; celles arrivées pendant le cycle sont lancées ensuite (drain).
+    private void scheduledRun() {
+        if (!running.tryLock()) {
+            monitoring.recordSyncSkipped();
+            System.out.println("⏭️ Synchronisation planifiée sautée : un cycle est déjà en cours");
+            return;
+        }
+        try {
+            pending.set(false);
+            adapt(sync.synchronize());
+        } finally {
+            running.unlock();
+        }
+        drain();
+    }
+
+    // 🔹 Synchronisation demandée manuellement ; false si elle est regroupée avec le cycle suivant
+    public boolean requestSync() {
+        pending.set(true);
+        if (drain()) return true;
+        monitoring.recordSyncCoalesced();
+        System.out.println("🔁 Synchronisation manuelle regroupée avec le prochain cycle");
+        return false;
+    }
+
+    // Lance les cycles demandés tant qu'il en reste, si aucun cycle n'est en cours.
+    // La demande est relue après chaque libération : une demande arrivée pendant la fin d'un
+    // cycle n'est pas perdue.
+    private boolean drain() {
+        boolean ran = false;
+        while (pending.get() && running.tryLock()) {
+            try {
+                while (pending.getAndSet(false)) {
+                    adapt(sync.synchronize());
+                    ran = true;
+                }
+            } finally {
+                running.unlock();
+            }
+        }
+        return ran;
+    }
+
+    private void adapt(long changes) {
+        if (changes < 0) return;
+        long next;
+        if (changes >= busyChanges) {
+            next = Math.max(minInterval, interval / 2);
+        } else if (changes == 0) {
+            next = Math.min(maxInterval, interval + interval / 2);
+        } else {
+            next = (interval + baseInterval) / 2;
+        }
+        if (next != interval) {
+            System.out.println("⏱️ Intervalle de synchronisation : " + interval + " → " + next + " ms ("
+                    + changes + " changements)");
+            interval = next;
+        }
+        monitoring.recordSyncInterval(next);
+    }
+}
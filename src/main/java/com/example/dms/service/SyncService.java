@@ -1,165 +1,399 @@
 package com.example.dms.service;
 
+import com.example.dms.config.RegionRegistry;
 import com.example.dms.model.Vente;
-import org.springframework.scheduling.annotation.Scheduled;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.*;
+import java.util.function.Function;
 
 @Service
 public class SyncService {
 
+    private final RegionRegistry regions;
     private final MultiVenteService multi;
     private final MonitoringService monitoring;
+    private final VenteRoutingIndex routingIndex;
+    private final HybridLogicalClock clock;
+    private final ReplicationQueue replicationQueue;
+    private final AnalyticsService analytics;
+    private final ReplicaSelector replicas;
+    private final SnapshotService snapshots;
+    private final ShardLeaseManager leases;
+    private final Environment environment;
 
-    public SyncService(MultiVenteService multi, MonitoringService monitoring) {
+    // Lectures et propagations par région lancées en parallèle sur des threads virtuels
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // Délai par défaut d'une région (surchargeable via sync.region-timeout-ms.<région>)
+    private final long defaultTimeoutMillis;
+
+    // Nature d'un cycle de synchronisation
+    //  FULL   : scan complet de toutes les bases
+    //  DELTA  : seules les lignes modifiées depuis le dernier cycle sont lues
+    //  MERKLE : comparaison des empreintes par bucket, seuls les buckets divergents sont lus
+    private enum Pass { FULL, DELTA, MERKLE }
+
+    // Mode configuré : "delta", "merkle" ou "full"
+    private final String mode;
+    // Marge de relecture sous le high-water mark, en millisecondes de version HLC (transactions
+    // validées en retard, horloges des instances décalées)
+    private final long overlapMillis;
+    // Un passage de contrôle complet tous les N cycles incrémentaux
+    private final int fullScanEvery;
+    // Contrôle périodique (et premier cycle) du mode delta : "merkle" ou "full"
+    private final Pass repairPass;
+    // Nombre de bits d'UUID définissant les buckets d'anti-entropie (2^bits buckets, max 16)
+    private final int bucketBits;
+
+    // High-water mark par région : plus grande version HLC déjà synchronisée (updated_at ne sert
+    // qu'à l'affichage : il dépend de l'horloge de l'écrivain et n'est pas monotone)
+    private final Map<String, Long> watermarks = new ConcurrentHashMap<>();
+    private int cyclesSinceFullScan = 0;
+    // Shards synchronisés au cycle précédent (ShardLeaseManager) : un shard repris d'une autre
+    // instance n'est pas couvert par nos high-water marks et impose un passage de réparation
+    private Set<Integer> lastShards = Set.of();
+
+    public SyncService(RegionRegistry regions, MultiVenteService multi, MonitoringService monitoring,
+                       VenteRoutingIndex routingIndex, HybridLogicalClock clock, ReplicationQueue replicationQueue,
+                       AnalyticsService analytics, ReplicaSelector replicas, SnapshotService snapshots,
+                       ShardLeaseManager leases, Environment environment,
+                       @Value("${sync.region-timeout-ms.default:20000}") long defaultTimeoutMillis,
+                       @Value("${sync.mode:delta}") String mode,
+                       @Value("${sync.delta.overlap-ms:5000}") long overlapMillis,
+                       @Value("${sync.delta.full-scan-every:60}") int fullScanEvery,
+                       @Value("${sync.delta.repair:merkle}") String repair,
+                       @Value("${sync.anti-entropy.bucket-bits:8}") int bucketBits) {
+        this.regions = regions;
         this.multi = multi;
         this.monitoring = monitoring;
+        this.routingIndex = routingIndex;
+        this.clock = clock;
+        this.replicationQueue = replicationQueue;
+        this.analytics = analytics;
+        this.replicas = replicas;
+        this.snapshots = snapshots;
+        this.leases = leases;
+        this.environment = environment;
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+        this.mode = mode.toLowerCase();
+        this.overlapMillis = overlapMillis;
+        this.fullScanEvery = fullScanEvery;
+        this.repairPass = "full".equalsIgnoreCase(repair) ? Pass.FULL : Pass.MERKLE;
+        this.bucketBits = Math.max(1, Math.min(bucketBits, 16));
     }
 
-    // 🔹 Synchronisation automatique toutes les 60 s
-    @Scheduled(fixedDelayString = "${sync.interval}")
-    public void synchronize() {
+    // 🔹 Un cycle de synchronisation, lancé uniquement par SyncCoordinator (jamais deux à la fois)
+    //    Retourne le volume de changements observé (IDs modifiés en mode delta, ventes propagées
+    //    sinon), ou -1 si le cycle a échoué
+    public long synchronize() {
+        // 🧩 Plusieurs instances : seuls les shards (préfixes d'UUID) dont cette instance a le bail
+        ShardLeaseManager.Assignment shards = leases.acquire();
+        if (shards.isEmpty()) {
+            System.out.println("🧩 Aucun shard attribué à cette instance : cycle sauté");
+            return 0;
+        }
+        boolean reassigned = !shards.shards().equals(lastShards);
+        lastShards = shards.shards();
+
         long startTime = monitoring.startSync();
-        System.out.println("⏳ Synchronisation en cours...");
-        
+        LocalDateTime cycleStart = LocalDateTime.now();
+        long clockAtStart = clock.now();
+        Pass pass = nextPass(reassigned);
+        String label = switch (pass) {
+            case FULL -> "complète";
+            case DELTA -> "incrémentale";
+            case MERKLE -> "par empreintes (anti-entropie)";
+        };
+        System.out.println("⏳ Synchronisation " + label + " en cours..."
+                + (shards.all() ? "" : " (shards " + shards.shards() + ")"));
+
         try {
-            // 1️⃣ Récupérer toutes les ventes de chaque base avec gestion d'erreurs
-            Map<UUID, Vente> dakar = new HashMap<>();
-            Map<UUID, Vente> thies = new HashMap<>();
-            Map<UUID, Vente> stl = new HashMap<>();
-            
-            boolean hasErrors = false;
-            
-            // Récupération Dakar avec gestion d'erreur
-            try {
-                dakar = multi.findAllFromDakar().stream()
-                        .collect(Collectors.toMap(Vente::getId, v -> v));
-                monitoring.recordRegionAccess("Dakar");
-                System.out.println("✅ Dakar : " + dakar.size() + " ventes récupérées");
-            } catch (Exception e) {
-                System.err.println("❌ Erreur connexion à Dakar : " + e.getMessage());
-                monitoring.recordRegionError("Dakar");
-                hasErrors = true;
-            }
-            
-            // Récupération Thies avec gestion d'erreur
-            try {
-                thies = multi.findAllFromThies().stream()
-                        .collect(Collectors.toMap(Vente::getId, v -> v));
-                monitoring.recordRegionAccess("Thies");
-                System.out.println("✅ Thies : " + thies.size() + " ventes récupérées");
-            } catch (Exception e) {
-                System.err.println("❌ Erreur connexion à Thies : " + e.getMessage());
-                monitoring.recordRegionError("Thies");
-                hasErrors = true;
-            }
-            
-            // Récupération Saint-Louis avec gestion d'erreur
-            try {
-                stl = multi.findAllFromStl().stream()
-                        .collect(Collectors.toMap(Vente::getId, v -> v));
-                monitoring.recordRegionAccess("Saint-Louis");
-                System.out.println("✅ Saint-Louis : " + stl.size() + " ventes récupérées");
-            } catch (Exception e) {
-                System.err.println("❌ Erreur connexion à Saint-Louis : " + e.getMessage());
-                monitoring.recordRegionError("Saint-Louis");
-                hasErrors = true;
-            }
+            // 1️⃣ Récupérer, pour chaque base en parallèle, les ventes à comparer
+            //    (chaque région contient sa version locale de tous les IDs candidats)
+            Set<String> failed = ConcurrentHashMap.newKeySet();
+            Map<String, List<Vente>> byRegion = new LinkedHashMap<>();
+            Map<String, Long> newWatermarks = new HashMap<>();
+            long phaseStart = System.nanoTime();
+            Long knownTotal = switch (pass) {
+                case FULL -> fetchFull(shards, byRegion, newWatermarks, failed);
+                case DELTA -> fetchDelta(shards, byRegion, newWatermarks, failed);
+                case MERKLE -> fetchMerkle(shards, byRegion, newWatermarks, failed);
+            };
+            monitoring.recordSyncPhase("fetch", System.nanoTime() - phaseStart);
 
-            // 2️⃣ Union de tous les IDs
-            Set<UUID> allIds = new HashSet<>();
-            allIds.addAll(dakar.keySet());
-            allIds.addAll(thies.keySet());
-            allIds.addAll(stl.keySet());
-            
-            System.out.println("📊 Total unique IDs : " + allIds.size());
-
-            // 3️⃣ Pour chaque vente, choisir la plus récente (last-write-wins)
-            int propagated = 0;
-            for (UUID id : allIds) {
-                Vente vD = dakar.get(id);
-                Vente vT = thies.get(id);
-                Vente vS = stl.get(id);
-
-                // Trouver la version la plus récente
-                Vente latest = Stream.of(vD, vT, vS)
-                        .filter(Objects::nonNull)
-                        .max(Comparator.comparing(Vente::getUpdatedAt))
-                        .orElse(null);
-
-                if (latest == null) continue;
-
-                // 🔁 Propager la version la plus récente dans les autres bases
-                try {
-                    if (vD == null || vD.getUpdatedAt().isBefore(latest.getUpdatedAt())) {
-                        multi.saveToDakar(cloneForRegion(latest, "Dakar"));
-                        propagated++;
-                    }
-                } catch (Exception e) {
-                    System.err.println("❌ Erreur propagation vers Dakar : " + e.getMessage());
-                    hasErrors = true;
-                }
-                
-                try {
-                    if (vT == null || vT.getUpdatedAt().isBefore(latest.getUpdatedAt())) {
-                        multi.saveToThies(cloneForRegion(latest, "Thies"));
-                        propagated++;
-                    }
-                } catch (Exception e) {
-                    System.err.println("❌ Erreur propagation vers Thies : " + e.getMessage());
-                    hasErrors = true;
-                }
-                
-                try {
-                    if (vS == null || vS.getUpdatedAt().isBefore(latest.getUpdatedAt())) {
-                        multi.saveToStl(cloneForRegion(latest, "Saint-Louis"));
-                        propagated++;
-                    }
-                } catch (Exception e) {
-                    System.err.println("❌ Erreur propagation vers Saint-Louis : " + e.getMessage());
-                    hasErrors = true;
+            // 2️⃣ Pour chaque vente, choisir la plus récente (last-write-wins)
+            //    Une région injoignable n'est pas une cible : son état réel est inconnu
+            //    La fusion travaille sur des colonnes primitives ; seules les lignes à propager
+            //    sont ensuite copiées en entités
+            phaseStart = System.nanoTime();
+            List<String> present = new ArrayList<>(byRegion.keySet());
+            List<List<Vente>> rows = present.stream().map(byRegion::get).toList();
+            List<Vente> winners = new ArrayList<>();
+            MergeKernel.Columns[] columns = rows.stream().map(MergeKernel.Columns::of).toArray(MergeKernel.Columns[]::new);
+            MergeKernel.Result merge = MergeKernel.merge(columns, (region, row) -> {
+                Vente latest = rows.get(region).get(row);
+                long version = HybridLogicalClock.versionOf(latest);
+                routingIndex.record(latest.getId(), latest.getRegion(), version);
+                clock.observe(version);
+                analytics.apply(latest);
+                winners.add(latest);
+            });
+            Map<String, List<Vente>> toPush = new LinkedHashMap<>();
+            for (int t = 0; t < present.size(); t++) {
+                String target = present.get(t);
+                List<Vente> copies = new ArrayList<>(merge.pushCount(t));
+                for (int k = 0; k < merge.pushCount(t); k++) {
+                    Vente source = rows.get(merge.sourceRegion(t, k)).get(merge.sourceRow(t, k));
+                    copies.add(LwwMerge.cloneForRegion(source, target));
                 }
+                toPush.put(target, copies);
             }
-            
+            System.out.println("📊 Total unique IDs : " + merge.uniqueIds());
+            monitoring.recordSyncPhase("merge", System.nanoTime() - phaseStart);
+
+            // 🔁 Propager les versions les plus récentes : une tâche par région cible en parallèle,
+            //    écriture en masse (upsert par lots) dans chaque région
+            //    Une propagation en échec est mise en file durable et rejouée par ReplicationQueue
+            phaseStart = System.nanoTime();
+            Set<String> queued = ConcurrentHashMap.newKeySet();
+            Map<String, Integer> saved = fanOut(toPush.keySet(), "propagate",
+                    region -> toPush.get(region).isEmpty() ? 0 : multi.upsertAll(region, toPush.get(region)), queued);
+            queued.forEach(region -> replicationQueue.enqueue(region, toPush.get(region)));
+            int propagated = saved.values().stream().mapToInt(Integer::intValue).sum();
+            monitoring.recordSyncPhase("propagate", System.nanoTime() - phaseStart);
+
             System.out.println("📤 " + propagated + " ventes propagées");
-            
-            // Mettre à jour les statistiques
-            monitoring.setTotalVentes(allIds.size());
 
-            if (hasErrors) {
-                monitoring.endSyncFailure(startTime, "Synchronisation partielle avec erreurs");
+            long changes = pass == Pass.DELTA ? winners.size() : propagated;
+
+            // 🗂️ Publier l'instantané global (reconstruit après un scan complet de toutes les bases)
+            if (shards.all()) {
+                snapshots.publish(winners, pass == Pass.FULL && failed.isEmpty(), cycleStart);
+            } else {
+                publishClusterState(shards, winners);
+            }
+
+            // Mettre à jour les statistiques (le total exact n'est pas connu en mode incrémental,
+            // ni quand l'instance ne synchronise qu'une partie des shards)
+            if (knownTotal != null && shards.all()) {
+                monitoring.setTotalVentes(knownTotal);
+            } else {
+                monitoring.addTotalVentes(merge.newIds());
+            }
+
+            if (!failed.isEmpty()) {
+                // Les high-water marks ne bougent pas : le prochain cycle relira la même fenêtre
+                monitoring.endSyncFailure(startTime, "Synchronisation partielle avec erreurs : " + failed);
                 System.out.println("⚠️ Synchronisation terminée avec erreurs !");
             } else {
-                monitoring.endSyncSuccess(startTime);
-                System.out.println("✅ Synchronisation terminée avec succès !");
+                // Toutes les lectures ont abouti : les écritures manquantes sont en file,
+                // les high-water marks peuvent avancer, plafonnés à l'horloge du début du cycle
+                newWatermarks.forEach((region, latest) -> watermarks.put(region, HybridLogicalClock.watermark(
+                        watermarks.getOrDefault(region, 0L), latest, clockAtStart, overlapMillis)));
+                cyclesSinceFullScan = pass == Pass.DELTA ? cyclesSinceFullScan + 1 : 0;
+                // Chaque région propagée a reçu toutes les versions antérieures au début du cycle :
+                // elle peut servir seule les lectures globales (ReplicaSelector)
+                // Instance ne synchronisant qu'une partie des shards : seuls ses shards sont déclarés
+                // à jour (ShardLeaseManager), les régions le deviennent via publishClusterState
+                if (shards.all()) {
+                    present.stream().filter(region -> !queued.contains(region))
+                            .forEach(region -> replicas.markSynced(region, cycleStart));
+                } else if (queued.isEmpty()) {
+                    leases.markSynced(shards);
+                }
+                if (queued.isEmpty()) {
+                    monitoring.endSyncSuccess(startTime);
+                    System.out.println("✅ Synchronisation terminée avec succès !");
+                } else {
+                    monitoring.endSyncFailure(startTime, "Propagation mise en file pour : " + queued);
+                    System.out.println("⚠️ Synchronisation terminée, propagation différée vers " + queued);
+                }
             }
-            
+            return changes;
+
         } catch (Exception e) {
             monitoring.endSyncFailure(startTime, e.getMessage());
             System.err.println("❌ Erreur critique lors de la synchronisation : " + e.getMessage());
             e.printStackTrace();
+            return -1;
+        }
+    }
+
+    // 🧩 Instance ne synchronisant qu'une partie des shards : chaque région est à jour à l'instant où
+    //    le dernier propriétaire de shard a terminé un cycle sans erreur (plus ancien synced_at) ;
+    //    l'instantané global reçoit les gagnantes des shards de l'instance, et les changements des
+    //    autres shards lus dans une seule de ces régions
+    private void publishClusterState(ShardLeaseManager.Assignment shards, List<Vente> winners) {
+        LocalDateTime asOf = shards.syncedAsOf();
+        if (asOf != null) regions.names().forEach(region -> replicas.markSynced(region, asOf));
+        String region = asOf == null ? null : replicas.choose()
+                .or(() -> regions.names().stream().filter(replicas::isFresh).findFirst())
+                .orElse(null);
+        snapshots.publishShards(winners, shards, region, asOf);
+    }
+
+    // 🔹 Scan complet de chaque base (ou des plages d'UUID des shards de l'instance)
+    private Long fetchFull(ShardLeaseManager.Assignment shards, Map<String, List<Vente>> byRegion,
+                           Map<String, Long> newWatermarks, Set<String> failed) {
+        Function<String, List<Vente>> scan = shards.all()
+                ? multi::findAllFrom
+                : region -> multi.findInBuckets(region, shards.shards(), shards.bits());
+        Map<String, List<Vente>> fetched = fanOut(regions.names(), "fetch", scan, failed);
+        collect(fetched, byRegion, newWatermarks);
+        return byRegion.values().stream().flatMap(List::stream).map(Vente::getId).distinct().count();
+    }
+
+    // 🔹 Lignes modifiées depuis le high-water mark, puis version locale des IDs modifiés ailleurs
+    private Long fetchDelta(ShardLeaseManager.Assignment shards, Map<String, List<Vente>> byRegion,
+                            Map<String, Long> newWatermarks, Set<String> failed) {
+        Map<String, List<Vente>> fetched = fanOut(regions.names(), "fetch", region -> {
+            long since = HybridLogicalClock.minusMillis(watermarks.get(region), overlapMillis);
+            return shards.all()
+                    ? multi.findChangedSince(region, since)
+                    : multi.findChangedSince(region, since, shards.shards(), shards.bits());
+        }, failed);
+        collect(fetched, byRegion, newWatermarks);
+
+        Set<UUID> changedIds = new HashSet<>();
+        byRegion.values().forEach(rows -> rows.forEach(v -> changedIds.add(v.getId())));
+        if (!changedIds.isEmpty()) {
+            Map<String, List<Vente>> completed = fanOut(byRegion.keySet(), "fetchIds", region -> {
+                Set<UUID> missing = new HashSet<>(changedIds);
+                byRegion.get(region).forEach(v -> missing.remove(v.getId()));
+                return missing.isEmpty() ? List.<Vente>of() : multi.findAllByIds(region, missing);
+            }, failed);
+            byRegion.keySet().retainAll(completed.keySet());
+            completed.forEach((region, rows) -> byRegion.get(region).addAll(rows));
+        }
+        return null;
+    }
+
+    // 🔹 Anti-entropie : comparer l'empreinte racine de chaque base, puis les empreintes par bucket,
+    //    et ne lire que les lignes des buckets divergents (empreintes limitées aux shards de l'instance)
+    private Long fetchMerkle(ShardLeaseManager.Assignment shards, Map<String, List<Vente>> byRegion,
+                             Map<String, Long> newWatermarks, Set<String> failed) {
+        Set<Integer> scope = shards.all() ? null : shards.shards();
+        // High-water marks lus avant les empreintes : toute écriture ultérieure sera vue par le delta suivant
+        Map<String, Optional<Long>> maxima = fanOut(regions.names(), "watermark",
+                region -> Optional.ofNullable(multi.findMaxVersion(region)), failed);
+        maxima.forEach((region, max) -> newWatermarks.put(region, max.orElse(0L)));
+
+        Map<String, MultiVenteService.Digest> roots = fanOut(maxima.keySet(), "digest",
+                region -> multi.rootDigest(region, bucketBits, scope, shards.bits()), failed);
+        roots.keySet().forEach(region -> byRegion.put(region, new ArrayList<>()));
+        long total = roots.values().stream().mapToLong(MultiVenteService.Digest::count).max().orElse(0);
+        roots.keySet().forEach(monitoring::recordRegionAccess);
+
+        if (roots.values().stream().map(MultiVenteService.Digest::hash).distinct().count() <= 1) {
+            System.out.println("🌳 Empreintes identiques dans toutes les régions joignables");
+            return total;
         }
+
+        Map<String, Map<Integer, String>> digests = fanOut(roots.keySet(), "digest",
+                region -> multi.bucketDigests(region, bucketBits, scope, shards.bits()), failed);
+        Set<Integer> differing = new TreeSet<>();
+        digests.values().forEach(m -> differing.addAll(m.keySet()));
+        differing.removeIf(bucket -> digests.values().stream()
+                .map(m -> m.get(bucket))
+                .distinct()
+                .count() == 1);
+        System.out.println("🌳 " + differing.size() + "/" + (1 << bucketBits) + " buckets divergents");
+
+        byRegion.keySet().retainAll(digests.keySet());
+        if (!differing.isEmpty()) {
+            Map<String, List<Vente>> rows = fanOut(digests.keySet(), "fetch",
+                    region -> multi.findInBuckets(region, differing, bucketBits), failed);
+            byRegion.keySet().retainAll(rows.keySet());
+            rows.forEach((region, list) -> byRegion.get(region).addAll(list));
+        }
+        return total;
     }
 
-    private Vente cloneForRegion(Vente source, String region) {
-        Vente clone = new Vente();
-        clone.setId(source.getId());
-        clone.setDateVente(source.getDateVente());
-        clone.setMontant(source.getMontant());
-        clone.setProduit(source.getProduit());
-        clone.setRegion(region);
-        clone.setUpdatedAt(source.getUpdatedAt());
-        // Copier aussi les informations de suppression (tombstone)
-        clone.setDeleted(source.getDeleted());
-        clone.setDeletedAt(source.getDeletedAt());
-        return clone;
+    private void collect(Map<String, List<Vente>> fetched, Map<String, List<Vente>> byRegion,
+                         Map<String, Long> newWatermarks) {
+        fetched.forEach((region, rows) -> {
+            byRegion.put(region, new ArrayList<>(rows));
+            newWatermarks.put(region, maxVersion(rows, watermarks.getOrDefault(region, 0L)));
+            monitoring.recordRegionAccess(region);
+            System.out.println("✅ " + region + " : " + rows.size() + " ventes récupérées");
+        });
     }
 
-    // 🔹 Pour lancer la synchro manuellement depuis le contrôleur
-    public void manualSync() {
-        synchronize();
+    // 🔹 Exécute une tâche par région en parallèle (threads virtuels)
+    //    Chaque région a son propre délai : une région lente est abandonnée pour ce cycle
+    //    sans retarder les autres. Les régions en échec sont ajoutées à "failed".
+    private <T> Map<String, T> fanOut(Collection<String> targets, String phase,
+                                      Function<String, T> task, Set<String> failed) {
+        long start = System.nanoTime();
+        Map<String, Future<T>> futures = new LinkedHashMap<>();
+        for (String region : targets) {
+            futures.put(region, executor.submit(() -> {
+                long t0 = System.nanoTime();
+                try {
+                    return task.apply(region);
+                } finally {
+                    monitoring.recordRegionTiming(region, phase, (System.nanoTime() - t0) / 1_000_000);
+                }
+            }));
+        }
+
+        Map<String, T> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<T>> entry : futures.entrySet()) {
+            String region = entry.getKey();
+            long remaining = timeoutMillis(region) - (System.nanoTime() - start) / 1_000_000;
+            try {
+                results.put(region, entry.getValue().get(Math.max(remaining, 0), TimeUnit.MILLISECONDS));
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                System.err.println("⏱️ " + region + " : délai de " + timeoutMillis(region) + " ms dépassé (" + phase + ")");
+                monitoring.recordRegionError(region);
+                failed.add(region);
+            } catch (ExecutionException e) {
+                System.err.println("❌ Erreur " + phase + " " + region + " : " + e.getCause().getMessage());
+                monitoring.recordRegionError(region);
+                failed.add(region);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                entry.getValue().cancel(true);
+                failed.add(region);
+            }
+        }
+        return results;
+    }
+
+    private long timeoutMillis(String region) {
+        return environment.getProperty("sync.region-timeout-ms." + region, Long.class, defaultTimeoutMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // 🔹 Nature du prochain cycle. En mode delta, le premier cycle (pas encore de high-water mark)
+    //    et le contrôle périodique utilisent le passage de réparation configuré (merkle ou full),
+    //    de même que le premier cycle après un changement de shards
+    private Pass nextPass(boolean reassigned) {
+        return switch (mode) {
+            case "full" -> Pass.FULL;
+            case "merkle" -> Pass.MERKLE;
+            default -> reassigned || !watermarks.keySet().containsAll(regions.names())
+                    || cyclesSinceFullScan >= fullScanEvery
+                    ? repairPass
+                    : Pass.DELTA;
+        };
+    }
+
+    private static long maxVersion(List<Vente> rows, long current) {
+        long max = current;
+        for (Vente v : rows) {
+            max = Math.max(max, HybridLogicalClock.versionOf(v));
+        }
+        return max;
     }
 }
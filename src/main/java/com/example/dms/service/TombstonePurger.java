@@ -0,0 +1,153 @@
+package com.example.dms.service;
+
+import com.example.dms.config.RegionRegistry;
+import com.example.dms.model.Vente;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Compactage des tombstones : les ventes supprimées depuis plus que le délai de grâce sont
+ * définitivement effacées de toutes les bases.
+ *
+ * Un tombstone n'est purgé que si chaque région le confirme : elle a la même version supprimée
+ * (ou l'a déjà purgée). Les tombstones sont parcourus par lots, région par région, dans l'ordre
+ * (deleted_at, id) : un lot sans tombstone confirmé (copie pas encore propagée) est dépassé au
+ * lieu d'arrêter le passage, qui le reprendra au suivant. Le passage est annulé si une région est
+ * hors ligne. Chaque région garde
+ * la version purgée dans vente_purged ; l'upsert de propagation écarte toute copie qui n'est pas
+ * plus récente, de sorte qu'une ancienne version restée en file ne ressuscite pas la vente.
+ * Les marqueurs sont oubliés après purged-retention-ms. Avec plusieurs instances, chacune ne
+ * purge que les tombstones de ses shards (ShardLeaseManager.owned).
+ */
+@Service
+public class TombstonePurger {
+
+    // Nombre max de lots par passage (durée bornée) ; le passage suivant repart du début
+    private static final int MAX_BATCHES = 100;
+
+    private final RegionRegistry regions;
+    private final MultiVenteService multi;
+    private final RegionCircuitBreaker breaker;
+    private final MonitoringService monitoring;
+    private final AnalyticsService analytics;
+    private final VenteRoutingIndex routingIndex;
+    private final ShardLeaseManager leases;
+    private final boolean enabled;
+    private final long graceMillis;
+    private final long retentionMillis;
+    private final int batchSize;
+
+    public TombstonePurger(RegionRegistry regions, MultiVenteService multi, RegionCircuitBreaker breaker,
+                           MonitoringService monitoring, AnalyticsService analytics, VenteRoutingIndex routingIndex,
+                           ShardLeaseManager leases,
+                           @Value("${tombstone.purge.enabled:true}") boolean enabled,
+                           @Value("${tombstone.grace-ms:604800000}") long graceMillis,
+                           @Value("${tombstone.purged-retention-ms:2592000000}") long retentionMillis,
+                           @Value("${tombstone.batch-size:1000}") int batchSize) {
+        this.regions = regions;
+        this.multi = multi;
+        this.breaker = breaker;
+        this.monitoring = monitoring;
+        this.analytics = analytics;
+        this.routingIndex = routingIndex;
+        this.leases = leases;
+        this.enabled = enabled;
+        this.graceMillis = graceMillis;
+        this.retentionMillis = retentionMillis;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${tombstone.purge.interval-ms:3600000}",
+               initialDelayString = "${tombstone.purge.initial-delay-ms:300000}")
+    public void purge() {
+        if (!enabled) return;
+        List<String> names = regions.names();
+        List<String> offline = names.stream().filter(region -> !breaker.isAvailable(region)).toList();
+        if (!offline.isEmpty()) {
+            System.out.println("🧹 Compactage des tombstones reporté, régions hors ligne : " + offline);
+            return;
+        }
+        // 🧩 Plusieurs instances : seuls les tombstones des shards de l'instance
+        ShardLeaseManager.Assignment owned = leases.owned();
+        if (owned.isEmpty()) {
+            System.out.println("🧹 Compactage des tombstones reporté : aucun shard attribué à cette instance");
+            return;
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().minusNanos(graceMillis * 1_000_000);
+        long purged = 0;
+        // Dernier tombstone lu dans chaque région (curseur), régions dont tout a été lu
+        Map<String, Vente> positions = new HashMap<>();
+        Set<String> exhausted = new HashSet<>();
+        try {
+            for (int batch = 0; batch < MAX_BATCHES && !exhausted.containsAll(names); batch++) {
+                Map<UUID, Vente> candidates = candidates(names, cutoff, owned, positions, exhausted);
+                if (candidates.isEmpty()) break;
+
+                List<Vente> confirmed = confirm(names, candidates);
+                if (confirmed.isEmpty()) continue;
+
+                for (String region : names) {
+                    int deleted = multi.purgeTombstones(region, confirmed);
+                    monitoring.recordTombstonesPurged(region, deleted);
+                    purged += deleted;
+                }
+                List<UUID> ids = confirmed.stream().map(Vente::getId).toList();
+                ids.forEach(routingIndex::forget);
+                analytics.forget(ids);
+            }
+
+            LocalDateTime expiry = LocalDateTime.now().minusNanos(retentionMillis * 1_000_000);
+            for (String region : names) {
+                multi.expirePurgedMarkers(region, expiry);
+            }
+            monitoring.recordPurgeRun();
+            if (purged > 0) {
+                System.out.println("🧹 " + purged + " tombstones purgés (supprimés avant " + cutoff + ")");
+            }
+        } catch (Exception e) {
+            // Une purge interrompue est sans risque : chaque région est compactée dans sa propre
+            // transaction et le passage suivant reprend les tombstones restants
+            System.err.println("❌ Compactage des tombstones : " + e.getMessage());
+        }
+    }
+
+    // Lot suivant de tombstones expirés de chaque région (version la plus récente par ID) ;
+    //    fait avancer le curseur de chaque région
+    private Map<UUID, Vente> candidates(List<String> names, LocalDateTime cutoff, ShardLeaseManager.Assignment owned,
+                                        Map<String, Vente> positions, Set<String> exhausted) {
+        Map<UUID, Vente> candidates = new LinkedHashMap<>();
+        for (String region : names) {
+            if (exhausted.contains(region)) continue;
+            List<Vente> rows = multi.findExpiredTombstones(region, cutoff, positions.get(region), batchSize,
+                    owned.restriction(), owned.bits());
+            if (rows.size() < batchSize) exhausted.add(region);
+            if (!rows.isEmpty()) positions.put(region, rows.get(rows.size() - 1));
+            for (Vente v : rows) {
+                candidates.merge(v.getId(), v, (a, b) -> HybridLogicalClock.isNewer(b, a) ? b : a);
+            }
+        }
+        return candidates;
+    }
+
+    // Tombstones présents sous la même version dans chaque région (ou déjà purgés)
+    private List<Vente> confirm(List<String> names, Map<UUID, Vente> candidates) {
+        Set<UUID> confirmed = new HashSet<>(candidates.keySet());
+        for (String region : names) {
+            Map<UUID, Vente> local = new HashMap<>();
+            multi.findAllByIds(region, confirmed).forEach(v -> local.put(v.getId(), v));
+            Set<UUID> purged = multi.findPurgedIds(region, confirmed);
+            confirmed.removeIf(id -> {
+                Vente v = local.get(id);
+                if (v == null) return !purged.contains(id);
+                return !Boolean.TRUE.equals(v.getDeleted()) || HybridLogicalClock.compare(v, candidates.get(id)) != 0;
+            });
+            if (confirmed.isEmpty()) break;
+        }
+        return confirmed.stream().map(candidates::get).toList();
+    }
+}
@@ -0,0 +1,332 @@
+package com.example.dms.service;
+
+import com.example.dms.config.RegionRegistry;
+import com.example.dms.model.BulkResult;
+import com.example.dms.model.Vente;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Import et export en masse des ventes, en flux : la mémoire utilisée ne dépend pas du volume.
+ *
+ * L'import lit l'entrée au fil de l'eau et écrit par lots de batch-size lignes (COPY puis upsert,
+ * une transaction par lot) dans la région choisie ; les lots déjà validés restent en cas d'erreur
+ * plus loin dans le fichier. L'export lit les ventes actives d'une région par curseur et les écrit
+ * directement dans la réponse.
+ *
+ * Formats :
+ *  - csv : en-tête id,date_vente,montant,produit ; id vide = nouvelle vente
+ *  - binary : en-tête "DMSV" + version (1 octet), puis par vente un octet de drapeaux
+ *    (ROW | DATE | MONTANT | PRODUIT), l'UUID (2 longs) et les champs présents ; 0 termine le flux
+ */
+@Service
+public class VenteBulkService {
+
+    public enum Format {
+        CSV("text/csv"), BINARY("application/octet-stream");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return this == CSV ? "csv" : "bin";
+        }
+
+        public static Format parse(String format) {
+            return switch (format.toLowerCase(Locale.ROOT)) {
+                case "csv" -> CSV;
+                case "binary", "bin" -> BINARY;
+                default -> throw new IllegalArgumentException("Format inconnu : " + format);
+            };
+        }
+    }
+
+    static final String CSV_HEADER = "id,date_vente,montant,produit";
+
+    static final int BINARY_MAGIC = 0x444D5356; // "DMSV"
+    static final int BINARY_VERSION = 1;
+    static final int ROW = 0x01;
+    static final int DATE = 0x02;
+    static final int MONTANT = 0x04;
+    static final int PRODUIT = 0x08;
+
+    private final RegionRegistry regions;
+    private final MultiVenteService multi;
+    private final RegionCircuitBreaker breaker;
+    private final MonitoringService monitoring;
+    // Lignes par lot (et par transaction) à l'import
+    private final int batchSize;
+    // Lignes lues par aller-retour du curseur à l'export
+    private final int fetchSize;
+
+    public VenteBulkService(RegionRegistry regions, MultiVenteService multi, RegionCircuitBreaker breaker,
+                            MonitoringService monitoring,
+                            @Value("${bulk.batch-size:5000}") int batchSize,
+                            @Value("${bulk.fetch-size:1000}") int fetchSize) {
+        this.regions = regions;
+        this.multi = multi;
+        this.breaker = breaker;
+        this.monitoring = monitoring;
+        this.batchSize = Math.max(1, batchSize);
+        this.fetchSize = Math.max(1, fetchSize);
+    }
+
+    // 🔹 Import d'un flux CSV ou binaire dans une région
+    public BulkResult importVentes(String region, Format format, InputStream body) throws IOException {
+        regions.get(region); // région inconnue : IllegalArgumentException avant toute lecture
+        long start = System.nanoTime();
+        long rows = 0;
+        VenteReader reader = format == Format.CSV ? new CsvReader(body) : new BinaryReader(body);
+        List<Vente> batch = new ArrayList<>(batchSize);
+        try {
+            for (Vente v = reader.next(); v != null; v = reader.next()) {
+                batch.add(v);
+                if (batch.size() == batchSize) {
+                    rows += multi.importBatch(region, batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                rows += multi.importBatch(region, batch);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("❌ Import " + region + " interrompu après " + rows + " ventes : " + e.getMessage());
+            throw e;
+        }
+        BulkResult result = BulkResult.of("import", region, format.extension(), rows, System.nanoTime() - start);
+        monitoring.recordBulkTransfer(result);
+        System.out.println("📦 Import " + region + " : " + rows + " ventes en " + result.durationMs() + " ms ("
+                + Math.round(result.rowsPerSecond()) + " lignes/s)");
+        return result;
+    }
+
+    // 🔹 Région lue par un export : celle demandée, sinon la première joignable
+    //    (toutes les régions convergent vers les mêmes ventes)
+    public String exportRegion(String region) {
+        if (region != null) {
+            regions.get(region);
+            return region;
+        }
+        return regions.names().stream().filter(breaker::isAvailable).findFirst()
+                .orElseThrow(() -> new RegionUnavailableException(String.join(", ", regions.names())));
+    }
+
+    // 🔹 Export des ventes actives d'une région, sur une période facultative
+    public BulkResult exportVentes(String region, Format format, LocalDate from, LocalDate to,
+                                   OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        VenteWriter writer = format == Format.CSV ? new CsvWriter(out) : new BinaryWriter(out);
+        long rows = multi.streamActive(region, from, to, fetchSize, v -> {
+            try {
+                writer.write(v);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.finish();
+        BulkResult result = BulkResult.of("export", region, format.extension(), rows, System.nanoTime() - start);
+        monitoring.recordBulkTransfer(result);
+        System.out.println("📦 Export " + region + " : " + rows + " ventes en " + result.durationMs() + " ms ("
+                + Math.round(result.rowsPerSecond()) + " lignes/s)");
+        return result;
+    }
+
+    // ===== Lecture =====
+
+    interface VenteReader {
+        // Vente suivante, null en fin de flux
+        Vente next() throws IOException;
+    }
+
+    static final class CsvReader implements VenteReader {
+        private final BufferedReader in;
+        private long line;
+
+        CsvReader(InputStream body) {
+            this.in = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public Vente next() throws IOException {
+            String text;
+            do {
+                text = in.readLine();
+                if (text == null) return null;
+                line++;
+                if (line == 1 && text.startsWith("\uFEFF")) text = text.substring(1);
+            } while (text.isBlank() || (line == 1 && text.trim().equalsIgnoreCase(CSV_HEADER)));
+
+            List<String> fields = splitCsv(text);
+            if (fields.size() != 4) {
+                throw new IllegalArgumentException("Ligne " + line + " : 4 colonnes attendues (" + CSV_HEADER + ")");
+            }
+            try {
+                Vente v = new Vente();
+                if (!fields.get(0).isBlank()) v.setId(UUID.fromString(fields.get(0).trim()));
+                v.setDateVente(fields.get(1).isBlank() ? null : LocalDate.parse(fields.get(1).trim()));
+                v.setMontant(fields.get(2).isBlank() ? null : Double.valueOf(fields.get(2).trim()));
+                v.setProduit(fields.get(3).isEmpty() ? null : fields.get(3));
+                return v;
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Ligne " + line + " invalide : " + e.getMessage(), e);
+            }
+        }
+
+        // Champs séparés par des virgules ; un champ entre guillemets peut contenir des virgules
+        // et des guillemets doublés ("")
+        private List<String> splitCsv(String text) {
+            List<String> fields = new ArrayList<>(4);
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            if (quoted) throw new IllegalArgumentException("Ligne " + line + " : guillemet non fermé");
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    static final class BinaryReader implements VenteReader {
+        private final DataInputStream in;
+        private boolean headerRead;
+
+        BinaryReader(InputStream body) {
+            this.in = new DataInputStream(new BufferedInputStream(body));
+        }
+
+        @Override
+        public Vente next() throws IOException {
+            try {
+                return read();
+            } catch (EOFException e) {
+                throw new IllegalArgumentException("Flux binaire tronqué", e);
+            }
+        }
+
+        private Vente read() throws IOException {
+            if (!headerRead) {
+                if (in.readInt() != BINARY_MAGIC) throw new IllegalArgumentException("Flux binaire invalide (en-tête)");
+                int version = in.readUnsignedByte();
+                if (version != BINARY_VERSION) throw new IllegalArgumentException("Version de format non supportée : " + version);
+                headerRead = true;
+            }
+            int flags = in.read();
+            if (flags < 0) throw new IllegalArgumentException("Flux binaire tronqué (marqueur de fin absent)");
+            if (flags == 0) return null;
+            if ((flags & ROW) == 0) throw new IllegalArgumentException("Flux binaire invalide (drapeaux " + flags + ")");
+            Vente v = new Vente();
+            v.setId(new UUID(in.readLong(), in.readLong()));
+            v.setDateVente((flags & DATE) != 0 ? LocalDate.ofEpochDay(in.readLong()) : null);
+            v.setMontant((flags & MONTANT) != 0 ? in.readDouble() : null);
+            v.setProduit((flags & PRODUIT) != 0 ? in.readUTF() : null);
+            return v;
+        }
+    }
+
+    // ===== Écriture =====
+
+    interface VenteWriter {
+        void write(Vente v) throws IOException;
+
+        // Fin du flux (marqueur éventuel) puis vidage du tampon
+        void finish() throws IOException;
+    }
+
+    static final class CsvWriter implements VenteWriter {
+        private final Writer out;
+
+        CsvWriter(OutputStream out) throws IOException {
+            this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            this.out.write(CSV_HEADER);
+            this.out.write('\n');
+        }
+
+        @Override
+        public void write(Vente v) throws IOException {
+            out.write(v.getId().toString());
+            out.write(',');
+            if (v.getDateVente() != null) out.write(v.getDateVente().toString());
+            out.write(',');
+            if (v.getMontant() != null) out.write(v.getMontant().toString());
+            out.write(',');
+            if (v.getProduit() != null) out.write(quote(v.getProduit()));
+            out.write('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            out.flush();
+        }
+
+        private static String quote(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            // Un retour à la ligne dans un produit n'est pas relisible ligne par ligne : remplacé par une espace
+            return '"' + value.replace("\"", "\"\"").replace('\n', ' ').replace('\r', ' ') + '"';
+        }
+    }
+
+    static final class BinaryWriter implements VenteWriter {
+        private final DataOutputStream out;
+
+        BinaryWriter(OutputStream out) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+            this.out.writeInt(BINARY_MAGIC);
+            this.out.writeByte(BINARY_VERSION);
+        }
+
+        @Override
+        public void write(Vente v) throws IOException {
+            int flags = ROW
+                    | (v.getDateVente() != null ? DATE : 0)
+                    | (v.getMontant() != null ? MONTANT : 0)
+                    | (v.getProduit() != null ? PRODUIT : 0);
+            out.writeByte(flags);
+            out.writeLong(v.getId().getMostSignificantBits());
+            out.writeLong(v.getId().getLeastSignificantBits());
+            if (v.getDateVente() != null) out.writeLong(v.getDateVente().toEpochDay());
+            if (v.getMontant() != null) out.writeDouble(v.getMontant());
+            if (v.getProduit() != null) out.writeUTF(v.getProduit());
+        }
+
+        @Override
+        public void finish() throws IOException {
+            out.writeByte(0);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.dms.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index de routage en mémoire : pour chaque vente, la région qui détient sa version la plus récente.
+ * Alimenté par les écritures de MultiVenteService et par chaque cycle de SyncService.
+ * Une entrée absente ou périmée n'est jamais bloquante : la recherche retombe alors sur
+ * une lecture parallèle des trois bases.
+ */
+@Component
+public class VenteRoutingIndex {
+
+    // version : version HLC de la dernière écriture connue (HybridLogicalClock)
+    public record Route(String region, long version) {}
+
+    private final ConcurrentHashMap<UUID, Route> routes = new ConcurrentHashMap<>();
+
+    // Au-delà, les nouvelles ventes ne sont plus indexées (protection mémoire)
+    private final int maxEntries;
+
+    public VenteRoutingIndex(@Value("${routing.max-entries:1000000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public Optional<Route> lookup(UUID id) {
+        return Optional.ofNullable(routes.get(id));
+    }
+
+    // 🔹 Enregistrer une version ; une version plus ancienne que celle connue est ignorée
+    public void record(UUID id, String region, long version) {
+        if (id == null || region == null) return;
+        if (routes.size() >= maxEntries && !routes.containsKey(id)) return;
+        Route route = new Route(region, version);
+        routes.merge(id, route, (current, candidate) -> isNewer(candidate, current) ? candidate : current);
+    }
+
+    public void forget(UUID id) {
+        routes.remove(id);
+    }
+
+    public int size() {
+        return routes.size();
+    }
+
+    private static boolean isNewer(Route candidate, Route current) {
+        return candidate.version() >= current.version();
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.dms.service;
+
+import com.example.dms.model.Vente;
+import com.example.dms.model.VentePage;
+import com.example.dms.model.VenteRollup;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Instantané global immuable des ventes actives, stocké en colonnes : une vente est une position
+ * dans des tableaux primitifs (44 octets), sans entité Vente en mémoire.
+ *
+ *  - id : bits haut et bas de l'UUID
+ *  - day : date_vente en jours depuis 1970 (NO_DATE si absente)
+ *  - cents : montant en centimes (NO_MONTANT si absent), pour des sommes exactes
+ *  - produit, region : codes dans un dictionnaire (NO_CODE si absent) ; la région est celle
+ *    d'origine de la version, comme pour AnalyticsService
+ *  - version : version HLC de la ligne
+ *
+ * Les lignes suivent l'ordre de la liste (date_vente décroissante puis id décroissant) : une page
+ * est une tranche lue à partir du curseur, un filtre de période une plage contiguë. Un instantané
+ * n'est jamais modifié, apply() en construit un nouveau : il se lit sans verrou.
+ */
+public final class VenteSnapshot {
+
+    static final int NO_DATE = Integer.MIN_VALUE;
+    static final long NO_MONTANT = Long.MIN_VALUE;
+    static final int NO_CODE = -1;
+
+    // Filtres facultatifs (null = pas de filtre) ; période sur date_vente, bornes incluses
+    public record Filter(String produit, String region, LocalDate from, LocalDate to) {
+
+        public static final Filter NONE = new Filter(null, null, null, null);
+    }
+
+    private final LocalDateTime asOf;
+    private final int size;
+    private final long[] msb;
+    private final long[] lsb;
+    private final int[] day;
+    private final long[] cents;
+    private final int[] produit;
+    private final int[] region;
+    private final long[] version;
+    private final String[] produits;
+    private final String[] regions;
+
+    private VenteSnapshot(LocalDateTime asOf, int size, long[] msb, long[] lsb, int[] day, long[] cents,
+                          int[] produit, int[] region, long[] version, String[] produits, String[] regions) {
+        this.asOf = asOf;
+        this.size = size;
+        this.msb = msb;
+        this.lsb = lsb;
+        this.day = day;
+        this.cents = cents;
+        this.produit = produit;
+        this.region = region;
+        this.version = version;
+        this.produits = produits;
+        this.regions = regions;
+    }
+
+    public static VenteSnapshot empty() {
+        return new VenteSnapshot(null, 0, new long[0], new long[0], new int[0], new long[0],
+                new int[0], new int[0], new long[0], new String[0], new String[0]);
+    }
+
+    public LocalDateTime asOf() {
+        return asOf;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // 🔹 Nouvel instantané : celui-ci, plus les versions données (une version plus ancienne que
+    //    celle déjà présente est ignorée ; un tombstone retire la vente)
+    public VenteSnapshot apply(Collection<Vente> changes, LocalDateTime asOf) {
+        Map<UUID, Vente> latest = new HashMap<>();
+        for (Vente v : changes) {
+            latest.merge(v.getId(), v, (a, b) -> HybridLogicalClock.isNewer(b, a) ? b : a);
+        }
+
+        // Lignes conservées : celles sans version plus récente dans "changes"
+        int[] kept = new int[size];
+        int keptCount = 0;
+        for (int i = 0; i < size; i++) {
+            Vente change = latest.isEmpty() ? null : latest.get(new UUID(msb[i], lsb[i]));
+            if (change == null) {
+                kept[keptCount++] = i;
+            } else if (HybridLogicalClock.versionOf(change) < version[i]) {
+                latest.remove(change.getId());
+                kept[keptCount++] = i;
+            }
+        }
+
+        List<Vente> added = new ArrayList<>(latest.size());
+        for (Vente v : latest.values()) {
+            if (!Boolean.TRUE.equals(v.getDeleted())) added.add(v);
+        }
+        added.sort((a, b) -> compare(dayOf(a), a.getId().getMostSignificantBits(), a.getId().getLeastSignificantBits(),
+                dayOf(b), b.getId().getMostSignificantBits(), b.getId().getLeastSignificantBits()));
+
+        // Dictionnaires : les codes existants restent valides, les nouvelles valeurs sont ajoutées
+        Dictionary produitDict = new Dictionary(produits);
+        Dictionary regionDict = new Dictionary(regions);
+
+        int n = keptCount + added.size();
+        long[] nMsb = new long[n];
+        long[] nLsb = new long[n];
+        int[] nDay = new int[n];
+        long[] nCents = new long[n];
+        int[] nProduit = new int[n];
+        int[] nRegion = new int[n];
+        long[] nVersion = new long[n];
+
+        // Fusion de deux suites déjà triées
+        int k = 0;
+        int a = 0;
+        for (int out = 0; out < n; out++) {
+            boolean takeOld;
+            if (k == keptCount) {
+                takeOld = false;
+            } else if (a == added.size()) {
+                takeOld = true;
+            } else {
+                int i = kept[k];
+                Vente v = added.get(a);
+                takeOld = compare(day[i], msb[i], lsb[i],
+                        dayOf(v), v.getId().getMostSignificantBits(), v.getId().getLeastSignificantBits()) < 0;
+            }
+            if (takeOld) {
+                int i = kept[k++];
+                nMsb[out] = msb[i];
+                nLsb[out] = lsb[i];
+                nDay[out] = day[i];
+                nCents[out] = cents[i];
+                nProduit[out] = produit[i];
+                nRegion[out] = region[i];
+                nVersion[out] = version[i];
+            } else {
+                Vente v = added.get(a++);
+                nMsb[out] = v.getId().getMostSignificantBits();
+                nLsb[out] = v.getId().getLeastSignificantBits();
+                nDay[out] = dayOf(v);
+                nCents[out] = v.getMontant() != null ? Math.round(v.getMontant() * 100) : NO_MONTANT;
+                nProduit[out] = produitDict.code(v.getProduit());
+                nRegion[out] = regionDict.code(v.getOriginRegion() != null ? v.getOriginRegion() : v.getRegion());
+                nVersion[out] = HybridLogicalClock.versionOf(v);
+            }
+        }
+        return new VenteSnapshot(asOf, n, nMsb, nLsb, nDay, nCents, nProduit, nRegion, nVersion,
+                produitDict.values(), regionDict.values());
+    }
+
+    // 🔹 Une page de ventes après le curseur "after" (null : première page, même curseur que MultiVenteService.findPage)
+    //    Comme la liste en base, les ventes sans date viennent en dernier (NO_DATE est le plus petit jour)
+    public VentePage page(VentePage.Cursor after, int pageSize, Filter filter) {
+        int start = firstIndex(filter);
+        if (after != null) {
+            int afterDay = after.date() != null ? (int) after.date().toEpochDay() : NO_DATE;
+            start = Math.max(start, firstAfter(afterDay,
+                    after.id().getMostSignificantBits(), after.id().getLeastSignificantBits()));
+        }
+        Matcher matcher = new Matcher(filter);
+        List<Vente> ventes = new ArrayList<>(Math.min(pageSize, size));
+        for (int i = start; i < size && ventes.size() < pageSize && !matcher.pastEnd(i); i++) {
+            if (matcher.test(i)) ventes.add(toVente(i));
+        }
+        String nextCursor = null;
+        if (ventes.size() == pageSize) {
+            nextCursor = VentePage.Cursor.of(ventes.get(ventes.size() - 1)).toString();
+        }
+        return new VentePage(ventes, nextCursor, List.of());
+    }
+
+    // 🔹 Agrégats par "produit", "region" ou "jour" des ventes correspondant au filtre
+    public List<VenteRollup> aggregate(String groupBy, Filter filter) {
+        Map<Object, long[]> groups = new HashMap<>();
+        Matcher matcher = new Matcher(filter);
+        for (int i = firstIndex(filter); i < size && !matcher.pastEnd(i); i++) {
+            if (!matcher.test(i)) continue;
+            Object key = switch (groupBy) {
+                case "produit" -> produit[i];
+                case "region" -> region[i];
+                case "jour" -> day[i];
+                default -> throw new IllegalArgumentException("Dimension inconnue : " + groupBy);
+            };
+            // count, somme, min, max (centimes) ; les montants absents comptent sans valeur
+            long[] g = groups.computeIfAbsent(key, x -> new long[]{0, 0, Long.MAX_VALUE, Long.MIN_VALUE});
+            g[0]++;
+            if (cents[i] != NO_MONTANT) {
+                g[1] += cents[i];
+                g[2] = Math.min(g[2], cents[i]);
+                g[3] = Math.max(g[3], cents[i]);
+            }
+        }
+
+        List<VenteRollup> result = new ArrayList<>(groups.size());
+        groups.forEach((key, g) -> {
+            Double min = g[2] == Long.MAX_VALUE ? null : g[2] / 100.0;
+            Double max = g[3] == Long.MIN_VALUE ? null : g[3] / 100.0;
+            int code = (Integer) key;
+            result.add(switch (groupBy) {
+                case "produit" -> new VenteRollup(null, value(produits, code), null, g[0], g[1] / 100.0, min, max);
+                case "region" -> new VenteRollup(value(regions, code), null, null, g[0], g[1] / 100.0, min, max);
+                default -> new VenteRollup(null, null, code == NO_DATE ? null : LocalDate.ofEpochDay(code),
+                        g[0], g[1] / 100.0, min, max);
+            });
+        });
+        switch (groupBy) {
+            case "produit" -> result.sort(Comparator.comparing(VenteRollup::sum).reversed());
+            case "region" -> result.sort(Comparator.comparing(VenteRollup::region, Comparator.nullsLast(Comparator.naturalOrder())));
+            default -> result.sort(Comparator.comparing(VenteRollup::day, Comparator.nullsFirst(Comparator.naturalOrder())));
+        }
+        return result;
+    }
+
+    private Vente toVente(int i) {
+        Vente v = new Vente();
+        v.setId(new UUID(msb[i], lsb[i]));
+        v.setDateVente(day[i] == NO_DATE ? null : LocalDate.ofEpochDay(day[i]));
+        v.setMontant(cents[i] == NO_MONTANT ? null : cents[i] / 100.0);
+        v.setProduit(value(produits, produit[i]));
+        v.setRegion(value(regions, region[i]));
+        v.setDeleted(false);
+        v.stamp(version[i], value(regions, region[i]));
+        return v;
+    }
+
+    // Première ligne dont le jour est <= filter.to (les jours sont décroissants)
+    private int firstIndex(Filter filter) {
+        if (filter.to() == null) return 0;
+        return firstAfter((int) filter.to().plusDays(1).toEpochDay(), 0, 0);
+    }
+
+    // Première ligne située strictement après (day, msb, lsb) dans l'ordre de la liste
+    private int firstAfter(int d, long hi, long lo) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(day[mid], msb[mid], lsb[mid], d, hi, lo) <= 0) low = mid + 1; else high = mid;
+        }
+        return low;
+    }
+
+    // Filtre ligne à ligne ; produit et région comparés par code
+    private final class Matcher {
+        private final int produitCode;
+        private final int regionCode;
+        private final int fromDay;
+        // Filtre de période : les ventes sans date n'y correspondent pas
+        private final boolean dated;
+        private final boolean empty;
+
+        Matcher(Filter filter) {
+            produitCode = filter.produit() == null ? NO_CODE : indexOf(produits, filter.produit());
+            regionCode = filter.region() == null ? NO_CODE : indexOf(regions, filter.region());
+            fromDay = filter.from() == null ? NO_DATE : (int) filter.from().toEpochDay();
+            dated = filter.from() != null || filter.to() != null;
+            // Valeur absente du dictionnaire : aucune vente ne correspond
+            empty = (filter.produit() != null && produitCode == NO_CODE)
+                    || (filter.region() != null && regionCode == NO_CODE);
+        }
+
+        boolean test(int i) {
+            return (produitCode == NO_CODE || produit[i] == produitCode)
+                    && (regionCode == NO_CODE || region[i] == regionCode)
+                    && (!dated || day[i] != NO_DATE);
+        }
+
+        // Au-delà de la période (jours décroissants) : inutile de continuer
+        boolean pastEnd(int i) {
+            return empty || (fromDay != NO_DATE && day[i] < fromDay);
+        }
+    }
+
+    // Ordre de la liste : jour décroissant puis id décroissant (non signé, comme PostgreSQL)
+    private static int compare(int dayA, long msbA, long lsbA, int dayB, long msbB, long lsbB) {
+        if (dayA != dayB) return Integer.compare(dayB, dayA);
+        int cmp = Long.compareUnsigned(msbB, msbA);
+        return cmp != 0 ? cmp : Long.compareUnsigned(lsbB, lsbA);
+    }
+
+    private static int dayOf(Vente v) {
+        return v.getDateVente() != null ? (int) v.getDateVente().toEpochDay() : NO_DATE;
+    }
+
+    private static String value(String[] dictionary, int code) {
+        return code == NO_CODE ? null : dictionary[code];
+    }
+
+    private static int indexOf(String[] dictionary, String value) {
+        for (int i = 0; i < dictionary.length; i++) {
+            if (dictionary[i].equals(value)) return i;
+        }
+        return NO_CODE;
+    }
+
+    // Dictionnaire en construction : codes existants conservés, nouvelles valeurs en fin
+    private static final class Dictionary {
+        private final List<String> values;
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        Dictionary(String[] existing) {
+            values = new ArrayList<>(Arrays.asList(existing));
+            for (int i = 0; i < existing.length; i++) codes.put(existing[i], i);
+        }
+
+        int code(String value) {
+            if (value == null) return NO_CODE;
+            return codes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+
+        String[] values() {
+            return values.toArray(String[]::new);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.dms.service;
+
+import com.example.dms.config.RegionRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Débit des écritures de propagation (synchronisation, file de réplication, outbox) vers chaque
+ * région : seau à jetons, une ligne écrite = un jeton.
+ *
+ * Avant chaque lot, MultiVenteService.upsertAll prélève autant de jetons que de lignes et attend
+ * s'il en manque (le seau peut s'endetter : un gros rattrapage attend d'autant). Les écritures des
+ * points de vente (ajout, modification, suppression) ne passent jamais par le seau. Après chaque lot,
+ * le débit est divisé par deux si des requêtes attendent une connexion du pool HikariCP de la région
+ * ou si le lot a duré plus que target-batch-ms (au plus une réduction par adjust-ms), sinon il remonte
+ * d'un vingtième de max-rate, sans dépasser max-rate. Les bornes se règlent à chaud (POST /api/throttle).
+ */
+@Component
+public class WriteThrottle {
+
+    // Poids du dernier lot dans la moyenne glissante des durées de lot
+    private static final double ALPHA = 0.2;
+
+    // État du seau d'une région (accès sous son propre verrou)
+    private static final class Bucket {
+        double maxRate;
+        double rate;
+        double tokens;
+        long refilledAt = System.nanoTime();
+        long decreasedAt;
+        long waits;
+        long throttledNanos;
+        double batchMillis;
+
+        void refill(long now, long burstNanos) {
+            double capacity = rate * burstNanos / 1e9;
+            tokens = Math.min(capacity, tokens + rate * (now - refilledAt) / 1e9);
+            refilledAt = now;
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final Map<String, Bucket> buckets = new LinkedHashMap<>();
+    private volatile boolean enabled;
+    private volatile double minRate;
+    private final long targetBatchNanos;
+    private final long adjustNanos;
+    private final long burstNanos;
+
+    public WriteThrottle(RegionRegistry regions, MeterRegistry registry, Environment environment,
+                         @Value("${sync.throttle.enabled:true}") boolean enabled,
+                         @Value("${sync.throttle.max-rate.default:5000}") double defaultMaxRate,
+                         @Value("${sync.throttle.min-rate:200}") double minRate,
+                         @Value("${sync.throttle.target-batch-ms:500}") long targetBatchMillis,
+                         @Value("${sync.throttle.adjust-ms:1000}") long adjustMillis,
+                         @Value("${sync.throttle.burst-ms:1000}") long burstMillis) {
+        this.registry = registry;
+        this.enabled = enabled;
+        this.minRate = Math.max(1, minRate);
+        this.targetBatchNanos = TimeUnit.MILLISECONDS.toNanos(targetBatchMillis);
+        this.adjustNanos = TimeUnit.MILLISECONDS.toNanos(adjustMillis);
+        this.burstNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, burstMillis));
+        for (String region : regions.names()) {
+            Bucket bucket = new Bucket();
+            bucket.maxRate = Math.max(this.minRate,
+                    environment.getProperty("sync.throttle.max-rate." + region, Double.class, defaultMaxRate));
+            bucket.rate = bucket.maxRate;
+            bucket.tokens = bucket.rate * burstNanos / 1e9;
+            // Première réduction possible dès le premier lot (l'origine de System.nanoTime est arbitraire)
+            bucket.decreasedAt = bucket.refilledAt - adjustNanos;
+            buckets.put(region, bucket);
+            Gauge.builder("dms.sync.throttle.rate", bucket, b -> b.rate)
+                    .tag("region", region)
+                    .baseUnit("rows/s")
+                    .register(registry);
+        }
+    }
+
+    // 🔹 Prélever "rows" jetons avant d'écrire un lot ; attend le temps de les regagner si besoin
+    public void acquire(String region, int rows) {
+        if (!enabled) return;
+        Bucket bucket = bucket(region);
+        long waitNanos;
+        synchronized (bucket) {
+            bucket.refill(System.nanoTime(), burstNanos);
+            bucket.tokens -= rows;
+            waitNanos = bucket.tokens >= 0 ? 0 : (long) (-bucket.tokens / bucket.rate * 1e9);
+            if (waitNanos > 0) {
+                bucket.waits++;
+                bucket.throttledNanos += waitNanos;
+            }
+        }
+        if (waitNanos == 0) return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Propagation vers " + region + " interrompue pendant le ralentissement", e);
+        }
+    }
+
+    // 🔹 Lot écrit en "durationNanos" : ajuster le débit selon la charge de la région
+    public void record(String region, long durationNanos) {
+        if (!enabled) return;
+        Bucket bucket = bucket(region);
+        boolean congested = poolPending(region) > 0 || durationNanos > targetBatchNanos;
+        synchronized (bucket) {
+            double millis = durationNanos / 1e6;
+            bucket.batchMillis = bucket.batchMillis == 0 ? millis : bucket.batchMillis + ALPHA * (millis - bucket.batchMillis);
+            long now = System.nanoTime();
+            if (!congested) {
+                bucket.rate = Math.min(bucket.maxRate, bucket.rate + bucket.maxRate / 20);
+            } else if (now - bucket.decreasedAt >= adjustNanos && bucket.rate > minRate) {
+                bucket.refill(now, burstNanos);
+                double previous = bucket.rate;
+                bucket.rate = Math.max(minRate, bucket.rate / 2);
+                bucket.decreasedAt = now;
+                System.out.println("🐢 Propagation vers " + region + " ralentie : " + Math.round(previous) + " → "
+                        + Math.round(bucket.rate) + " lignes/s (lot de " + Math.round(millis) + " ms, "
+                        + poolPending(region) + " en attente de connexion)");
+            }
+        }
+    }
+
+    // 🔹 Réglage à chaud : region null = toutes les régions ; un paramètre null n'est pas modifié
+    public void configure(String region, Boolean enabled, Double maxRate, Double minRate) {
+        if (region != null) bucket(region);
+        if (enabled != null) this.enabled = enabled;
+        if (minRate != null) this.minRate = Math.max(1, minRate);
+        buckets.forEach((name, bucket) -> {
+            if (region != null && !region.equals(name)) return;
+            synchronized (bucket) {
+                if (maxRate != null) bucket.maxRate = maxRate;
+                bucket.maxRate = Math.max(this.minRate, bucket.maxRate);
+                bucket.rate = Math.max(this.minRate, Math.min(bucket.rate, bucket.maxRate));
+            }
+        });
+        System.out.println("🎚️ Débit de propagation reconfiguré : " + state());
+    }
+
+    // 🔹 État courant par région (/api/stats)
+    public Map<String, Object> state() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("enabled", enabled);
+        state.put("minRate", minRate);
+        Map<String, Object> regions = new LinkedHashMap<>();
+        buckets.forEach((region, bucket) -> {
+            Map<String, Object> info = new LinkedHashMap<>();
+            synchronized (bucket) {
+                bucket.refill(System.nanoTime(), burstNanos);
+                info.put("rate", Math.round(bucket.rate));
+                info.put("maxRate", Math.round(bucket.maxRate));
+                info.put("tokens", Math.round(bucket.tokens));
+                info.put("waits", bucket.waits);
+                info.put("throttledMs", TimeUnit.NANOSECONDS.toMillis(bucket.throttledNanos));
+                info.put("batchMs", bucket.batchMillis);
+            }
+            info.put("poolPending", poolPending(region));
+            regions.put(region, info);
+        });
+        state.put("regions", regions);
+        return state;
+    }
+
+    // Requêtes en attente d'une connexion du pool de la région (le pool porte le nom de la région)
+    private int poolPending(String region) {
+        Gauge pending = registry.find("hikaricp.connections.pending").tag("pool", region).gauge();
+        return pending != null ? (int) pending.value() : 0;
+    }
+
+    private Bucket bucket(String region) {
+        Bucket bucket = buckets.get(region);
+        if (bucket == null) throw new IllegalArgumentException("Région inconnue : " + region);
+        return bucket;
+    }
+}
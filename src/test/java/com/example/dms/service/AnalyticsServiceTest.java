@@ -0,0 +1,88 @@
+package com.example.dms.service;
+
+import com.example.dms.model.Vente;
+import com.example.dms.model.VenteRollup;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static com.example.dms.service.VenteFixtures.DAY;
+import static com.example.dms.service.VenteFixtures.id;
+import static com.example.dms.service.VenteFixtures.vente;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AnalyticsServiceTest {
+
+	private final AnalyticsService analytics = new AnalyticsService(null, null, true);
+
+	@Test
+	void newerVersionReplacesContribution() {
+		UUID id = UUID.randomUUID();
+		analytics.apply(vente(id, "Dakar", 10.0, 1, false));
+		analytics.apply(vente(UUID.randomUUID(), "Dakar", 4.0, 1, false));
+		analytics.apply(vente(id, "Dakar", 25.0, 2, false));
+
+		VenteRollup total = analytics.total();
+		assertEquals(2, total.count());
+		assertEquals(29.0, total.sum());
+		assertEquals(4.0, total.min());
+		assertEquals(25.0, total.max());
+	}
+
+	@Test
+	void olderOrReplicatedVersionIsIgnored() {
+		UUID id = UUID.randomUUID();
+		analytics.apply(vente(id, "Dakar", 10.0, 5, false));
+		// Copie propagée (même version) puis version périmée
+		analytics.apply(vente(id, "Thies", 10.0, 5, false));
+		analytics.apply(vente(id, "Thies", 99.0, 3, false));
+
+		assertEquals(List.of("Dakar"), analytics.byRegion().stream().map(VenteRollup::region).toList());
+		assertEquals(10.0, analytics.total().sum());
+	}
+
+	@Test
+	void tombstoneRemovesContributionAndWinsTie() {
+		UUID id = UUID.randomUUID();
+		analytics.apply(vente(id, "Dakar", 10.0, 5, false));
+		analytics.apply(vente(id, "Thies", 10.0, 5, true));
+		// Une version vivante plus ancienne ne ressuscite pas la vente
+		analytics.apply(vente(id, "Dakar", 10.0, 4, false));
+
+		assertEquals(0, analytics.total().count());
+		assertNull(analytics.total().max());
+		assertEquals(List.of(), analytics.rollups(null, null, DAY, DAY));
+	}
+
+	@Test
+	void sumsDoNotDriftWhenContributionsAreReplaced() {
+		for (int i = 1; i <= 10; i++) {
+			analytics.apply(vente(id(i), "Dakar", 0.1, 1, false));
+		}
+		// Chaque vente corrigée plusieurs fois : retraits et ajouts successifs
+		for (int round = 2; round <= 51; round++) {
+			for (int i = 1; i <= 10; i++) {
+				analytics.apply(vente(id(i), "Dakar", round % 2 == 0 ? 0.7 : 0.1, round, false));
+			}
+		}
+
+		assertEquals(1.0, analytics.total().sum());
+		assertEquals(0.1, analytics.total().min());
+		assertEquals(0.1, analytics.byRegion().get(0).max());
+	}
+
+	@Test
+	void forgetDropsOnlyTombstones() {
+		analytics.apply(vente(id(1), "Dakar", 10.0, 5, true));
+		analytics.apply(vente(id(2), "Dakar", 4.0, 5, false));
+
+		analytics.forget(List.of(id(1), id(2)));
+		// La contribution vivante est gardée : une version plus ancienne reste ignorée
+		analytics.apply(vente(id(2), "Dakar", 99.0, 3, false));
+
+		assertEquals(1, analytics.total().count());
+		assertEquals(4.0, analytics.total().sum());
+	}
+}
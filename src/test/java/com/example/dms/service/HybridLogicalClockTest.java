@@ -0,0 +1,95 @@
+package com.example.dms.service;
+
+import com.example.dms.model.Vente;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static com.example.dms.service.VenteFixtures.BASE_TIME;
+import static com.example.dms.service.VenteFixtures.id;
+import static com.example.dms.service.VenteFixtures.stamped;
+import static com.example.dms.service.VenteFixtures.vente;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HybridLogicalClockTest {
+
+	private final HybridLogicalClock clock = new HybridLogicalClock();
+
+	@Test
+	void ticksAreStrictlyIncreasing() {
+		long previous = clock.tick();
+		for (int i = 0; i < 100_000; i++) {
+			long next = clock.tick();
+			assertTrue(next > previous, next + " <= " + previous);
+			previous = next;
+		}
+	}
+
+	@Test
+	void observedVersionFromAheadClockIsOvertaken() {
+		// Version écrite par un nœud dont l'horloge avance d'une heure
+		long ahead = HybridLogicalClock.fromTimestamp(LocalDateTime.now().plusHours(1)) + 7;
+		clock.observe(ahead);
+
+		assertEquals(ahead + 1, clock.tick());
+		assertEquals(ahead + 2, clock.tick());
+	}
+
+	@Test
+	void observingAnOlderVersionDoesNotMoveBack() {
+		long first = clock.tick();
+		clock.observe(HybridLogicalClock.fromTimestamp(BASE_TIME));
+
+		assertTrue(clock.tick() > first);
+	}
+
+	@Test
+	void modificationWinsOverTheVersionItReplaces() {
+		long ahead = HybridLogicalClock.fromTimestamp(LocalDateTime.now().plusMinutes(5));
+		Vente current = stamped(vente(id(1), "Thies", 1, false), ahead, "Thies");
+
+		long version = clock.tick(current);
+
+		assertTrue(version > ahead);
+		Vente modified = stamped(vente(id(1), "Dakar", 1, false), version, "Dakar");
+		assertTrue(HybridLogicalClock.isNewer(modified, current));
+	}
+
+	@Test
+	void legacyRowsGetVersionFromUpdatedAt() {
+		Vente legacy = vente(id(1), "Dakar", 90, false);
+
+		assertEquals(HybridLogicalClock.fromTimestamp(BASE_TIME.plusSeconds(90)), HybridLogicalClock.versionOf(legacy));
+		assertEquals(HybridLogicalClock.fromTimestamp(BASE_TIME.plusSeconds(85)),
+				HybridLogicalClock.minusMillis(HybridLogicalClock.versionOf(legacy), 5_000));
+	}
+
+	@Test
+	void watermarkFromAheadWriterStillCoversLaggingWriter() {
+		long overlap = 5_000;
+		long syncNow = HybridLogicalClock.fromTimestamp(BASE_TIME);
+		// Écrivain de Thies en avance d'une minute, écrivain de Dakar en retard de deux secondes
+		Vente ahead = stamped(vente(id(1), "Thies", 1, false),
+				HybridLogicalClock.fromTimestamp(BASE_TIME.plusMinutes(1)), "Thies");
+		long watermark = HybridLogicalClock.watermark(0, HybridLogicalClock.versionOf(ahead), syncNow, overlap);
+		Vente lagging = stamped(vente(id(2), "Dakar", 1, false),
+				HybridLogicalClock.fromTimestamp(BASE_TIME.plusSeconds(1).minusSeconds(2)), "Dakar");
+
+		assertEquals(HybridLogicalClock.minusMillis(syncNow, overlap), watermark);
+		long since = HybridLogicalClock.minusMillis(watermark, overlap);
+		assertTrue(HybridLogicalClock.versionOf(lagging) > since);
+		// Sans plafond, la relecture suivante serait passée au-dessus de l'écriture en retard
+		assertTrue(HybridLogicalClock.versionOf(lagging)
+				< HybridLogicalClock.minusMillis(HybridLogicalClock.versionOf(ahead), overlap));
+	}
+
+	@Test
+	void watermarkNeverMovesBack() {
+		long syncNow = HybridLogicalClock.fromTimestamp(BASE_TIME);
+		long current = HybridLogicalClock.fromTimestamp(BASE_TIME.minusSeconds(10));
+
+		assertEquals(current, HybridLogicalClock.watermark(current, current - 1, syncNow, 5_000));
+		assertEquals(current + 1, HybridLogicalClock.watermark(current, current + 1, syncNow, 5_000));
+	}
+}
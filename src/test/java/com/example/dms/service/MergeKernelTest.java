@@ -0,0 +1,95 @@
+package com.example.dms.service;
+
+import com.example.dms.model.Vente;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static com.example.dms.service.VenteFixtures.stamped;
+import static com.example.dms.service.VenteFixtures.vente;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MergeKernelTest {
+
+	private static final List<String> REGIONS = List.of("Dakar", "Thies", "Saint-Louis");
+
+	@Test
+	void sameDecisionsAsLwwMerge() {
+		Random rnd = new Random(7L);
+		Map<String, Map<UUID, Vente>> byRegion = new LinkedHashMap<>();
+		REGIONS.forEach(region -> byRegion.put(region, new HashMap<>()));
+		for (int i = 0; i < 5_000; i++) {
+			UUID id = new UUID(rnd.nextLong(), rnd.nextLong());
+			for (int r = 0; r < REGIONS.size(); r++) {
+				if (rnd.nextInt(3) > 0) {
+					// Horodatages distincts par copie : pas d'égalité à départager
+					byRegion.get(REGIONS.get(r)).put(id, vente(id, REGIONS.get(r), i * 10L + rnd.nextInt(3) * 3 + r, false));
+				}
+			}
+		}
+
+		LwwMerge.Result expected = LwwMerge.merge(byRegion, latest -> { });
+
+		List<List<Vente>> rows = REGIONS.stream().map(r -> (List<Vente>) new ArrayList<>(byRegion.get(r).values())).toList();
+		MergeKernel.Result actual = MergeKernel.merge(columns(rows), (region, row) -> { });
+
+		assertEquals(expected.uniqueIds(), actual.uniqueIds());
+		assertEquals(expected.newIds(), actual.newIds());
+		for (int t = 0; t < REGIONS.size(); t++) {
+			assertEquals(versions(expected.toPush().get(REGIONS.get(t))), versions(pushed(actual, rows, t)));
+		}
+	}
+
+	@Test
+	void tombstoneWinsTieOnUpdatedAt() {
+		UUID id = UUID.randomUUID();
+		List<List<Vente>> rows = List.of(
+				List.of(vente(id, "Dakar", 5, false)),
+				List.of(vente(id, "Thies", 5, true)),
+				List.of());
+		List<Integer> winners = new ArrayList<>();
+
+		MergeKernel.Result result = MergeKernel.merge(columns(rows), (region, row) -> winners.add(region));
+
+		assertEquals(List.of(1), winners);
+		assertEquals(List.of(true), pushed(result, rows, 0).stream().map(Vente::getDeleted).toList());
+		assertEquals(0, result.pushCount(1));
+		assertEquals(1, result.pushCount(2));
+	}
+
+	@Test
+	void originRegionBreaksVersionTiesAndCopiesAreNotRepushed() {
+		UUID id = UUID.randomUUID();
+		List<List<Vente>> rows = List.of(
+				List.of(stamped(vente(id, "Dakar", 5, false), 42L, "Thies")),
+				List.of(stamped(vente(id, "Thies", 5, false), 42L, "Thies")),
+				List.of(stamped(vente(id, "Saint-Louis", 5, false), 42L, "Dakar")));
+		List<Integer> winners = new ArrayList<>();
+
+		MergeKernel.Result result = MergeKernel.merge(columns(rows), (region, row) -> winners.add(region));
+
+		assertEquals(List.of(0), winners);
+		assertEquals(0, result.pushCount(0));
+		assertEquals(0, result.pushCount(1));
+		assertEquals(1, result.pushCount(2));
+	}
+
+	private static MergeKernel.Columns[] columns(List<List<Vente>> rows) {
+		return rows.stream().map(MergeKernel.Columns::of).toArray(MergeKernel.Columns[]::new);
+	}
+
+	private static List<Vente> pushed(MergeKernel.Result result, List<List<Vente>> rows, int target) {
+		List<Vente> out = new ArrayList<>();
+		for (int k = 0; k < result.pushCount(target); k++) {
+			out.add(rows.get(result.sourceRegion(target, k)).get(result.sourceRow(target, k)));
+		}
+		return out;
+	}
+
+	private static Map<UUID, LocalDateTime> versions(List<Vente> ventes) {
+		Map<UUID, LocalDateTime> out = new HashMap<>();
+		ventes.forEach(v -> out.put(v.getId(), v.getUpdatedAt()));
+		return out;
+	}
+}
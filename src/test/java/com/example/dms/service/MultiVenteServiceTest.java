@@ -0,0 +1,109 @@
+package com.example.dms.service;
+
+import com.example.dms.model.Vente;
+import com.example.dms.model.VentePage;
+import com.example.dms.model.VenteRollup;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.example.dms.service.VenteFixtures.DAY;
+import static com.example.dms.service.VenteFixtures.id;
+import static com.example.dms.service.VenteFixtures.vente;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MultiVenteServiceTest {
+
+	@Test
+	void mergedPageKeepsNewestCopyOfEachVente() {
+		// id(1) a changé de date : sa copie périmée (Thies) n'est pas voisine de la récente (Dakar)
+		List<Vente> dakar = List.of(
+				vente(id(1), "Dakar", DAY.plusDays(2), "Riz", 12.0, 9, false),
+				vente(id(2), "Dakar", DAY.plusDays(1), "Mil", 3.0, 1, false));
+		List<Vente> thies = List.of(
+				vente(id(3), "Thies", DAY.plusDays(1), "Mil", 4.0, 1, false),
+				vente(id(2), "Thies", DAY.plusDays(1), "Mil", 3.5, 2, false),
+				vente(id(1), "Thies", DAY, "Riz", 10.0, 1, false));
+
+		List<Vente> page = MultiVenteService.mergePages(List.of(dakar, thies), 10);
+
+		assertEquals(List.of(id(1), id(3), id(2)), page.stream().map(Vente::getId).toList());
+		assertEquals(List.of(12.0, 4.0, 3.5), page.stream().map(Vente::getMontant).toList());
+	}
+
+	@Test
+	void mergedShareIsAggregatedOnNewestCopies() {
+		// Thies n'a pas encore reçu la modification de id(1) ni la suppression de id(2)
+		List<Vente> dakar = List.of(
+				vente(id(1), "Dakar", DAY.plusDays(1), "Riz", 12.0, 9, false),
+				vente(id(2), "Dakar", DAY, "Mil", 3.0, 9, true));
+		List<Vente> thies = List.of(
+				vente(id(1), "Thies", DAY, "Riz", 10.0, 1, false),
+				vente(id(2), "Thies", DAY, "Mil", 3.0, 1, false),
+				vente(id(3), "Thies", DAY, "Riz", 4.0, 1, false));
+
+		List<VenteRollup> byProduit = MultiVenteService.rollupLatest(List.of(dakar, thies), true, null, null);
+		assertEquals(1, byProduit.size());
+		assertEquals("Riz", byProduit.get(0).produit());
+		assertEquals(2, byProduit.get(0).count());
+		assertEquals(16.0, byProduit.get(0).sum());
+		assertEquals(4.0, byProduit.get(0).min());
+
+		List<VenteRollup> byDay = MultiVenteService.rollupLatest(List.of(dakar, thies), false, DAY, DAY);
+		assertEquals(List.of(DAY), byDay.stream().map(VenteRollup::day).toList());
+		assertEquals(4.0, byDay.get(0).sum());
+	}
+
+	@Test
+	void mergedPageIsCutAfterDeduplication() {
+		List<Vente> dakar = List.of(
+				vente(id(3), "Dakar", 1, false),
+				vente(id(2), "Dakar", 1, false));
+		List<Vente> thies = List.of(
+				vente(id(3), "Thies", 1, false),
+				vente(id(1), "Thies", 1, false));
+
+		List<Vente> page = MultiVenteService.mergePages(List.of(dakar, thies), 2);
+
+		assertEquals(List.of(id(3), id(2)), page.stream().map(Vente::getId).toList());
+	}
+
+	@Test
+	void mergedPagePutsUndatedVentesLast() {
+		List<Vente> dakar = List.of(
+				vente(id(1), "Dakar", DAY, "Riz", 10.0, 1, false),
+				vente(id(4), "Dakar", null, "Mil", 2.0, 1, false));
+		List<Vente> thies = List.of(
+				vente(id(2), "Thies", DAY.plusDays(1), "Mil", 4.0, 1, false),
+				vente(id(5), "Thies", null, "Riz", 1.0, 1, false));
+
+		List<Vente> page = MultiVenteService.mergePages(List.of(dakar, thies), 10);
+
+		assertEquals(List.of(id(2), id(1), id(5), id(4)), page.stream().map(Vente::getId).toList());
+	}
+
+	@Test
+	void cursorRoundTrip() {
+		VentePage.Cursor cursor = VentePage.Cursor.of(vente(id(7), "Dakar", 1, false));
+
+		assertEquals("2025-01-01_00000000-0000-0000-0000-000000000007", cursor.toString());
+		assertEquals(cursor, VentePage.Cursor.parse(cursor.toString()));
+	}
+
+	@Test
+	void undatedCursorHasAnEmptyDate() {
+		VentePage.Cursor cursor = VentePage.Cursor.of(vente(id(7), "Dakar", null, "Riz", 1.0, 1, false));
+
+		assertEquals("_00000000-0000-0000-0000-000000000007", cursor.toString());
+		assertEquals(cursor, VentePage.Cursor.parse(cursor.toString()));
+	}
+
+	@Test
+	void malformedCursorIsRejected() {
+		for (String cursor : List.of("2025-01-01", "2025-13-01_00000000-0000-0000-0000-000000000007",
+				"2025-01-01_pas-un-uuid", "_", "null_00000000-0000-0000-0000-000000000007")) {
+			assertThrows(IllegalArgumentException.class, () -> VentePage.Cursor.parse(cursor));
+		}
+	}
+}
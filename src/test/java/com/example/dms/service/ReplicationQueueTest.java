@@ -0,0 +1,90 @@
+package com.example.dms.service;
+
+import com.example.dms.model.Vente;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static com.example.dms.service.VenteFixtures.BASE_TIME;
+import static com.example.dms.service.VenteFixtures.id;
+import static com.example.dms.service.VenteFixtures.stamped;
+import static com.example.dms.service.VenteFixtures.vente;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ReplicationQueueTest {
+
+	private static final long ENQUEUED_AT = 1_735_718_400_000L;
+
+	@Test
+	void recordsRoundTrip() throws IOException {
+		Vente tombstone = stamped(vente(id(1), "Dakar", 5, true), 42L << 16 | 3, "Thies");
+		tombstone.setDeletedAt(BASE_TIME.plusSeconds(5).plusNanos(123_456_000));
+		Vente sparse = vente(id(2), "Thies", null, null, 0, 7, false);
+		sparse.setMontant(null);
+
+		List<ReplicationQueue.Pending> read = ReplicationQueue.readLog(log(
+				frame(tombstone), frame(sparse)));
+
+		assertEquals(2, read.size());
+		assertEquals(ENQUEUED_AT, read.get(0).enqueuedAt());
+		Vente first = read.get(0).vente();
+		assertEquals(id(1), first.getId());
+		assertEquals("Dakar", first.getRegion());
+		assertEquals(tombstone.getUpdatedAt(), first.getUpdatedAt());
+		assertEquals(tombstone.getDateVente(), first.getDateVente());
+		assertEquals(1.0, first.getMontant());
+		assertEquals("Riz", first.getProduit());
+		assertEquals(true, first.getDeleted());
+		assertEquals(tombstone.getDeletedAt(), first.getDeletedAt());
+		assertEquals(42L << 16 | 3, first.getVersion());
+		assertEquals("Thies", first.getOriginRegion());
+
+		Vente second = read.get(1).vente();
+		assertEquals(id(2), second.getId());
+		assertNull(second.getDateVente());
+		assertNull(second.getProduit());
+		assertNull(second.getMontant());
+		assertNull(second.getDeletedAt());
+		assertNull(second.getOriginRegion());
+	}
+
+	@Test
+	void truncatedTailIsDropped() throws IOException {
+		ByteBuffer complete = frame(vente(id(1), "Dakar", 1, false));
+		ByteBuffer torn = frame(vente(id(2), "Dakar", 2, false));
+		// Arrêt brutal pendant l'écriture du second enregistrement
+		torn.limit(torn.limit() - 3);
+
+		List<ReplicationQueue.Pending> read = ReplicationQueue.readLog(log(complete, torn));
+
+		assertEquals(List.of(id(1)), read.stream().map(p -> p.vente().getId()).toList());
+	}
+
+	@Test
+	void badChecksumStopsReading() throws IOException {
+		ByteBuffer first = frame(vente(id(1), "Dakar", 1, false));
+		ByteBuffer corrupt = frame(vente(id(2), "Dakar", 2, false));
+		ByteBuffer after = frame(vente(id(3), "Dakar", 3, false));
+		// Un octet des données modifié : le CRC32 ne correspond plus
+		corrupt.put(Integer.BYTES + 5, (byte) (corrupt.get(Integer.BYTES + 5) ^ 0x40));
+
+		List<ReplicationQueue.Pending> read = ReplicationQueue.readLog(log(first, corrupt, after));
+
+		assertEquals(List.of(id(1)), read.stream().map(p -> p.vente().getId()).toList());
+	}
+
+	private static ByteBuffer frame(Vente v) throws IOException {
+		return ReplicationQueue.frame(new ReplicationQueue.Pending(v, ENQUEUED_AT));
+	}
+
+	private static ByteBuffer log(ByteBuffer... records) {
+		ByteBuffer log = ByteBuffer.allocate(records.length * 256);
+		for (ByteBuffer record : records) {
+			log.put(record);
+		}
+		return log.flip();
+	}
+}
@@ -0,0 +1,120 @@
+package com.example.dms.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SyncCoordinatorTest {
+
+	private final SyncService sync = mock(SyncService.class);
+	private final MonitoringService monitoring = mock(MonitoringService.class);
+	private final SyncCoordinator coordinator = new SyncCoordinator(sync, monitoring, 60000, 10000, 90000, 100);
+
+	// Premier cycle bloqué jusqu'à "release" ; les suivants sont immédiats
+	private final CountDownLatch entered = new CountDownLatch(1);
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final AtomicInteger cycles = new AtomicInteger();
+
+	private void blockFirstCycle() {
+		when(sync.synchronize()).thenAnswer(invocation -> {
+			if (cycles.incrementAndGet() == 1) {
+				entered.countDown();
+				assertTrue(release.await(5, TimeUnit.SECONDS));
+			}
+			return 1L;
+		});
+	}
+
+	private Thread runInBackground(Runnable task) throws InterruptedException {
+		Thread thread = new Thread(task);
+		thread.start();
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		return thread;
+	}
+
+	@Test
+	void idleRequestRunsOneCycleOnTheCallerThread() {
+		when(sync.synchronize()).thenReturn(1L);
+
+		assertTrue(coordinator.requestSync());
+
+		verify(sync, times(1)).synchronize();
+		verify(monitoring, never()).recordSyncCoalesced();
+	}
+
+	@Test
+	void requestsDuringACycleAreCoalescedIntoOneFollowUpCycle() throws InterruptedException {
+		blockFirstCycle();
+		Thread first = runInBackground(coordinator::requestSync);
+
+		assertFalse(coordinator.requestSync());
+		assertFalse(coordinator.requestSync());
+		assertFalse(coordinator.requestSync());
+		release.countDown();
+		first.join(5000);
+
+		verify(sync, times(2)).synchronize();
+		verify(monitoring, times(3)).recordSyncCoalesced();
+	}
+
+	@Test
+	void scheduledTriggerIsSkippedWhileACycleRuns() throws InterruptedException {
+		ScheduledTaskRegistrar registrar = new ScheduledTaskRegistrar();
+		coordinator.configureTasks(registrar);
+		Runnable scheduled = registrar.getTriggerTaskList().get(0).getRunnable();
+		blockFirstCycle();
+		Thread first = runInBackground(coordinator::requestSync);
+
+		scheduled.run();
+		release.countDown();
+		first.join(5000);
+
+		verify(sync, times(1)).synchronize();
+		verify(monitoring, times(1)).recordSyncSkipped();
+		scheduled.run();
+		verify(sync, times(2)).synchronize();
+	}
+
+	@Test
+	void manualRequestDuringAScheduledCycleRunsOneFollowUpCycle() throws InterruptedException {
+		ScheduledTaskRegistrar registrar = new ScheduledTaskRegistrar();
+		coordinator.configureTasks(registrar);
+		Runnable scheduled = registrar.getTriggerTaskList().get(0).getRunnable();
+		blockFirstCycle();
+		Thread first = runInBackground(scheduled);
+
+		assertFalse(coordinator.requestSync());
+		release.countDown();
+		first.join(5000);
+
+		verify(sync, times(2)).synchronize();
+		verify(monitoring, times(1)).recordSyncCoalesced();
+		verify(monitoring, never()).recordSyncSkipped();
+	}
+
+	@Test
+	void intervalFollowsTheVolumeOfChanges() {
+		when(sync.synchronize()).thenReturn(100L, 0L, -1L, 10L);
+
+		coordinator.requestSync();
+		verify(monitoring, times(1)).recordSyncInterval(30000L);
+		coordinator.requestSync();
+		verify(monitoring, times(1)).recordSyncInterval(45000L);
+		// Cycle en échec : intervalle inchangé
+		coordinator.requestSync();
+		verify(monitoring, times(1)).recordSyncInterval(45000L);
+		coordinator.requestSync();
+		verify(monitoring, times(1)).recordSyncInterval(52500L);
+	}
+}
@@ -0,0 +1,122 @@
+package com.example.dms.service;
+
+import com.example.dms.model.Vente;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.example.dms.service.VenteFixtures.DAY;
+import static com.example.dms.service.VenteFixtures.id;
+import static com.example.dms.service.VenteFixtures.vente;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VenteBulkServiceTest {
+
+	private static final List<Vente> VENTES = List.of(
+			vente(id(1), "Dakar", DAY, "Riz", 12.5, 1, false),
+			vente(id(2), "Dakar", DAY.plusDays(3), "Thé \"vert\", 500 g", 0.1, 1, false),
+			vente(id(3), "Dakar", null, null, 0, 1, false));
+
+	static {
+		VENTES.get(2).setMontant(null);
+	}
+
+	@Test
+	void csvRoundTrip() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		VenteBulkService.CsvWriter writer = new VenteBulkService.CsvWriter(out);
+		for (Vente v : VENTES) writer.write(v);
+		writer.finish();
+
+		assertSameVentes(VENTES, readAll(new VenteBulkService.CsvReader(new ByteArrayInputStream(out.toByteArray()))));
+	}
+
+	@Test
+	void binaryRoundTrip() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		VenteBulkService.BinaryWriter writer = new VenteBulkService.BinaryWriter(out);
+		for (Vente v : VENTES) writer.write(v);
+		writer.finish();
+
+		assertSameVentes(VENTES, readAll(new VenteBulkService.BinaryReader(new ByteArrayInputStream(out.toByteArray()))));
+	}
+
+	@Test
+	void malformedCsvIsRejectedWithItsLine() {
+		for (String body : List.of(
+				"id,date_vente,montant,produit\n,2025-01-01,10,Riz\n,2025-01-01,10\n",
+				",2025-01-01,10,Riz\n,2025-02-30,10,Riz\n",
+				",2025-01-01,10,Riz\n,2025-01-01,dix,Riz\n",
+				",2025-01-01,10,Riz\npas-un-uuid,2025-01-01,10,Riz\n",
+				",2025-01-01,10,Riz\n,2025-01-01,10,\"Riz\n")) {
+			IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+					() -> readAll(new VenteBulkService.CsvReader(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)))));
+			assertTrue(e.getMessage().startsWith("Ligne 2") || e.getMessage().startsWith("Ligne 3"), e.getMessage());
+		}
+	}
+
+	@Test
+	void malformedBinaryIsRejected() throws IOException {
+		ByteArrayOutputStream valid = new ByteArrayOutputStream();
+		VenteBulkService.BinaryWriter writer = new VenteBulkService.BinaryWriter(valid);
+		writer.write(VENTES.get(0));
+		writer.finish();
+		byte[] bytes = valid.toByteArray();
+
+		byte[] badMagic = bytes.clone();
+		badMagic[0] = 'X';
+		byte[] badVersion = bytes.clone();
+		badVersion[Integer.BYTES] = 9;
+		byte[] badFlags = bytes.clone();
+		badFlags[Integer.BYTES + 1] = VenteBulkService.DATE;
+		// Sans marqueur de fin, puis coupé au milieu d'une vente
+		byte[] noEnd = Arrays.copyOf(bytes, bytes.length - 1);
+		byte[] truncated = Arrays.copyOf(bytes, bytes.length - 6);
+
+		for (byte[] body : List.of(badMagic, badVersion, badFlags, noEnd, truncated, header(), new byte[0])) {
+			assertThrows(IllegalArgumentException.class,
+					() -> readAll(new VenteBulkService.BinaryReader(new ByteArrayInputStream(body))));
+		}
+	}
+
+	@Test
+	void unknownFormatIsRejected() {
+		assertEquals(VenteBulkService.Format.BINARY, VenteBulkService.Format.parse("BIN"));
+		assertThrows(IllegalArgumentException.class, () -> VenteBulkService.Format.parse("xml"));
+	}
+
+	private static byte[] header() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(VenteBulkService.BINARY_MAGIC);
+		data.writeByte(VenteBulkService.BINARY_VERSION);
+		return out.toByteArray();
+	}
+
+	private static List<Vente> readAll(VenteBulkService.VenteReader reader) throws IOException {
+		List<Vente> ventes = new ArrayList<>();
+		for (Vente v = reader.next(); v != null; v = reader.next()) {
+			ventes.add(v);
+		}
+		return ventes;
+	}
+
+	private static void assertSameVentes(List<Vente> expected, List<Vente> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getId(), actual.get(i).getId());
+			assertEquals(expected.get(i).getDateVente(), actual.get(i).getDateVente());
+			assertEquals(expected.get(i).getMontant(), actual.get(i).getMontant());
+			assertEquals(expected.get(i).getProduit(), actual.get(i).getProduit());
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.example.dms.service;
+
+import com.example.dms.model.Vente;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Ventes de test : même horloge de référence et mêmes valeurs par défaut pour tous les tests
+final class VenteFixtures {
+
+	static final LocalDateTime BASE_TIME = LocalDateTime.of(2025, 1, 1, 8, 0);
+	static final LocalDate DAY = LocalDate.of(2025, 1, 1);
+
+	private VenteFixtures() {
+	}
+
+	// Identifiant lisible, ordonné comme n
+	static UUID id(long n) {
+		return new UUID(0, n);
+	}
+
+	// Vente modifiée "seconds" secondes après BASE_TIME
+	static Vente vente(UUID id, String region, LocalDate day, String produit, double montant, long seconds, boolean deleted) {
+		Vente v = new Vente();
+		v.setId(id);
+		v.setRegion(region);
+		v.setMontant(montant);
+		v.setProduit(produit);
+		v.setDateVente(day);
+		v.setUpdatedAt(BASE_TIME.plusSeconds(seconds));
+		v.setDeleted(deleted);
+		return v;
+	}
+
+	static Vente vente(UUID id, String region, double montant, long seconds, boolean deleted) {
+		return vente(id, region, DAY, "Riz", montant, seconds, deleted);
+	}
+
+	static Vente vente(UUID id, String region, long seconds, boolean deleted) {
+		return vente(id, region, 1.0, seconds, deleted);
+	}
+
+	// Version HLC et région d'origine explicites (départage des égalités)
+	static Vente stamped(Vente v, long version, String origin) {
+		v.stamp(version, origin);
+		return v;
+	}
+}
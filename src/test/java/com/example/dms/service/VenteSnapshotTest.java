@@ -0,0 +1,87 @@
+package com.example.dms.service;
+
+import com.example.dms.model.Vente;
+import com.example.dms.model.VentePage;
+import com.example.dms.model.VenteRollup;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.example.dms.service.VenteFixtures.BASE_TIME;
+import static com.example.dms.service.VenteFixtures.DAY;
+import static com.example.dms.service.VenteFixtures.id;
+import static com.example.dms.service.VenteFixtures.vente;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class VenteSnapshotTest {
+
+	@Test
+	void pagesFollowListingOrderAcrossCursor() {
+		VenteSnapshot snapshot = VenteSnapshot.empty().apply(List.of(
+				vente(id(1), "Dakar", DAY, "Riz", 10.0, 1, false),
+				vente(id(2), "Dakar", DAY.plusDays(1), "Mil", 5.0, 1, false),
+				vente(id(3), "Dakar", DAY, "Riz", 2.5, 1, false)), BASE_TIME);
+
+		VentePage first = snapshot.page(null, 2, VenteSnapshot.Filter.NONE);
+		assertEquals(List.of(id(2), id(3)), first.ventes().stream().map(Vente::getId).toList());
+		VentePage second = snapshot.page(VentePage.Cursor.parse(first.nextCursor()), 2, VenteSnapshot.Filter.NONE);
+		assertEquals(List.of(id(1)), second.ventes().stream().map(Vente::getId).toList());
+		assertNull(second.nextCursor());
+		assertEquals(2.5, first.ventes().get(1).getMontant());
+	}
+
+	@Test
+	void pagesListUndatedVentesLastLikeTheDatabaseListing() {
+		VenteSnapshot snapshot = VenteSnapshot.empty().apply(List.of(
+				vente(id(1), "Dakar", DAY, "Riz", 10.0, 1, false),
+				vente(id(2), "Dakar", null, "Mil", 5.0, 1, false),
+				vente(id(4), "Dakar", null, "Mil", 1.0, 1, false),
+				vente(id(3), "Dakar", DAY.plusDays(1), "Riz", 2.5, 1, false)), BASE_TIME);
+
+		VentePage first = snapshot.page(null, 3, VenteSnapshot.Filter.NONE);
+		assertEquals(List.of(id(3), id(1), id(4)), first.ventes().stream().map(Vente::getId).toList());
+		assertEquals("_" + id(4), first.nextCursor());
+		VentePage second = snapshot.page(VentePage.Cursor.parse(first.nextCursor()), 3, VenteSnapshot.Filter.NONE);
+		assertEquals(List.of(id(2)), second.ventes().stream().map(Vente::getId).toList());
+		assertNull(second.nextCursor());
+	}
+
+	@Test
+	void newerVersionsReplaceRowsAndTombstonesRemoveThem() {
+		VenteSnapshot snapshot = VenteSnapshot.empty().apply(List.of(
+				vente(id(1), "Dakar", DAY, "Riz", 10.0, 5, false),
+				vente(id(2), "Dakar", DAY, "Mil", 4.0, 5, false)), BASE_TIME);
+
+		VenteSnapshot next = snapshot.apply(List.of(
+				vente(id(1), "Dakar", DAY, "Riz", 25.0, 6, false),
+				// Version périmée : ignorée
+				vente(id(2), "Dakar", DAY, "Mil", 99.0, 4, false),
+				vente(id(3), "Dakar", DAY, "Mil", 1.0, 6, true)), BASE_TIME.plusMinutes(1));
+		next = next.apply(List.of(vente(id(2), "Dakar", DAY, "Mil", 4.0, 7, true)), BASE_TIME.plusMinutes(2));
+
+		assertEquals(1, next.size());
+		assertEquals(2, snapshot.size());
+		List<VenteRollup> byProduit = next.aggregate("produit", VenteSnapshot.Filter.NONE);
+		assertEquals(1, byProduit.size());
+		assertEquals("Riz", byProduit.get(0).produit());
+		assertEquals(25.0, byProduit.get(0).sum());
+	}
+
+	@Test
+	void aggregatesApplyFiltersOnDictionaryAndDateRange() {
+		VenteSnapshot snapshot = VenteSnapshot.empty().apply(List.of(
+				vente(id(1), "Dakar", DAY, "Riz", 10.10, 1, false),
+				vente(id(2), "Dakar", DAY, "Riz", 0.20, 1, false),
+				vente(id(3), "Dakar", DAY.plusDays(1), "Riz", 7.0, 1, false),
+				vente(id(4), "Dakar", DAY, "Mil", 3.0, 1, false)), BASE_TIME);
+
+		List<VenteRollup> days = snapshot.aggregate("jour", new VenteSnapshot.Filter("Riz", null, DAY, DAY));
+		assertEquals(1, days.size());
+		assertEquals(DAY, days.get(0).day());
+		assertEquals(2, days.get(0).count());
+		assertEquals(10.30, days.get(0).sum());
+		assertEquals(0.20, days.get(0).min());
+		assertEquals(List.of(), snapshot.aggregate("region", new VenteSnapshot.Filter("Thé", null, null, null)));
+	}
+}
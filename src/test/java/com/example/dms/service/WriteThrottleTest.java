@@ -0,0 +1,95 @@
+package com.example.dms.service;
+
+import com.example.dms.config.RegionRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WriteThrottleTest {
+
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(900);
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+	// Requêtes en attente d'une connexion du pool de Dakar
+	private final AtomicInteger pending = new AtomicInteger();
+
+	private WriteThrottle throttle(long adjustMillis) {
+		RegionRegistry regions = mock(RegionRegistry.class);
+		when(regions.names()).thenReturn(List.of("Dakar", "Saint-Louis"));
+		Gauge.builder("hikaricp.connections.pending", pending, AtomicInteger::get)
+				.tag("pool", "Dakar")
+				.register(registry);
+		MockEnvironment environment = new MockEnvironment()
+				.withProperty("sync.throttle.max-rate.Saint-Louis", "400");
+		return new WriteThrottle(regions, registry, environment, true, 1000, 200, 500, adjustMillis, 1000);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static long rate(WriteThrottle throttle, String region) {
+		Map<String, Object> regions = (Map<String, Object>) throttle.state().get("regions");
+		return (Long) ((Map<String, Object>) regions.get(region)).get("rate");
+	}
+
+	@Test
+	void slowBatchHalvesTheRateAtMostOncePerAdjustWindow() {
+		WriteThrottle throttle = throttle(60000);
+
+		throttle.record("Dakar", SLOW);
+		assertEquals(500, rate(throttle, "Dakar"));
+		throttle.record("Dakar", SLOW);
+		assertEquals(500, rate(throttle, "Dakar"));
+		assertEquals(400, rate(throttle, "Saint-Louis"));
+	}
+
+	@Test
+	void pendingConnectionsCountAsCongestionEvenForFastBatches() {
+		WriteThrottle throttle = throttle(0);
+
+		pending.set(2);
+		throttle.record("Dakar", FAST);
+		assertEquals(500, rate(throttle, "Dakar"));
+	}
+
+	@Test
+	void rateIsFlooredAtMinRateThenClimbsBackAdditively() {
+		WriteThrottle throttle = throttle(0);
+
+		for (int i = 0; i < 5; i++) {
+			throttle.record("Dakar", SLOW);
+		}
+		assertEquals(200, rate(throttle, "Dakar"));
+
+		// Un vingtième de max-rate par lot rapide, sans dépasser max-rate
+		throttle.record("Dakar", FAST);
+		assertEquals(250, rate(throttle, "Dakar"));
+		for (int i = 0; i < 30; i++) {
+			throttle.record("Dakar", FAST);
+		}
+		assertEquals(1000, rate(throttle, "Dakar"));
+	}
+
+	@Test
+	void configureClampsRatesAndRejectsUnknownRegions() {
+		WriteThrottle throttle = throttle(0);
+
+		throttle.configure("Dakar", null, 100.0, null);
+		assertEquals(200, rate(throttle, "Dakar"));
+		throttle.configure(null, null, null, 300.0);
+		assertEquals(300, rate(throttle, "Dakar"));
+		assertEquals(400, rate(throttle, "Saint-Louis"));
+		assertThrows(IllegalArgumentException.class, () -> throttle.configure("Kaolack", null, 100.0, null));
+	}
+}